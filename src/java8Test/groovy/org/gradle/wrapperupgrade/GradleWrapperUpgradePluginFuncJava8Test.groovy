@@ -46,7 +46,7 @@ class GradleWrapperUpgradePluginFuncJava8Test extends Specification {
         """.stripMargin()
     }
 
-    def "plugin requires at least Gradle 6.0"() {
+    def "plugin requires at least Gradle 6.1"() {
         when:
         def result = GradleRunner.create()
             .withProjectDir(testProjectDir)
@@ -58,7 +58,7 @@ class GradleWrapperUpgradePluginFuncJava8Test extends Specification {
 
         then:
         println("Output: ${result.output}")
-        result.output.contains('This version of the Wrapper Upgrade Gradle plugin is not compatible with Gradle < 6.0')
+        result.output.contains('This version of the Wrapper Upgrade Gradle plugin is not compatible with Gradle < 6.1')
     }
 
     private static String determineJavaHome() {
@@ -0,0 +1,64 @@
+package org.gradle.wrapperupgrade;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the latest Gradle version from the versions feed, scaled up to the given number of copies of the test fixture.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GradleMetadataBenchmark {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    @Param({"1", "10", "100"})
+    public int scale;
+
+    private byte[] metadata;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode versions;
+        try (InputStream in = GradleMetadataBenchmark.class.getResourceAsStream("/gradle-metadata-all.json")) {
+            versions = mapper.readTree(in);
+        }
+        ArrayNode scaled = mapper.createArrayNode();
+        for (int i = 0; i < scale; i++) {
+            scaled.addAll((ArrayNode) versions);
+        }
+        metadata = mapper.writeValueAsBytes(scaled);
+    }
+
+    @Benchmark
+    public Optional<JsonNode> findLatestVersion() throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(metadata)) {
+            return GradleMetadataFetcher.findLatestVersion(parser);
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package org.gradle.wrapperupgrade;
+
+import org.gradle.util.internal.VersionNumber;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves the latest Maven version from the repository metadata, with the versions of the test fixture repeated the given number of times.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MavenMetadataBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int scale;
+
+    @Param({"false", "true"})
+    public boolean allowPreRelease;
+
+    private byte[] metadata;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<String> lines;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(MavenMetadataBenchmark.class.getResourceAsStream("/maven-metadata.xml"), StandardCharsets.UTF_8))) {
+            lines = reader.lines().collect(Collectors.toList());
+        }
+        StringBuilder scaled = new StringBuilder();
+        for (String line : lines) {
+            if (line.trim().equals("</versions>")) {
+                String versions = lines.stream().filter(l -> l.trim().startsWith("<version>")).collect(Collectors.joining("\n", "", "\n"));
+                for (int i = 1; i < scale; i++) {
+                    scaled.append(versions);
+                }
+            }
+            scaled.append(line).append('\n');
+        }
+        metadata = scaled.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Optional<VersionNumber> findLatestVersion() throws IOException {
+        try (InputStream in = new ByteArrayInputStream(metadata)) {
+            return MavenMetadataFetcher.findLatestVersion(in, allowPreRelease);
+        }
+    }
+
+}
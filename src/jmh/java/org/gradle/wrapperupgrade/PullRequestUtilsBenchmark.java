@@ -0,0 +1,66 @@
+package org.gradle.wrapperupgrade;
+
+import org.kohsuke.github.GHIssueState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes the pull requests to close and looks up a closed pull request among synthetic pull requests of many projects and build tools.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PullRequestUtilsBenchmark {
+
+    private static final String[] BUILD_TOOLS = {"Gradle", "Maven"};
+    private static final GHIssueState[] STATES = {GHIssueState.OPEN, GHIssueState.CLOSED};
+
+    @Param({"10000", "50000"})
+    public int pullRequestCount;
+
+    private PullRequestUtils pullRequestUtils;
+    private String missingClosedBranch;
+
+    @Setup
+    public void setUp() {
+        List<PullRequestInfo> pullRequests = new ArrayList<>(pullRequestCount);
+        for (int i = 0; i < pullRequestCount; i++) {
+            String project = "project-" + (i % 100);
+            String buildTool = BUILD_TOOLS[i % BUILD_TOOLS.length];
+            String version = "7." + (i / 200 % 10) + "." + (i % 3);
+            String headRef = PullRequestUtils.branchPrefix(project, buildTool) + version;
+            pullRequests.add(new PullRequestInfo("PR_" + i, i, headRef, STATES[i / 7 % STATES.length], "https://github.com/org/repo/pull/" + i));
+        }
+        pullRequestUtils = new PullRequestUtils(pullRequests);
+        missingClosedBranch = PullRequestUtils.branchPrefix("project-0", "Gradle") + "8.0";
+    }
+
+    @Benchmark
+    public Set<PullRequestInfo> pullRequestsToClose() {
+        return pullRequestUtils.pullRequestsToClose("project-42", "Gradle", "7.9.2");
+    }
+
+    @Benchmark
+    public boolean closedPrExists() {
+        // The worst case, as every pull request needs to be looked at
+        return pullRequestUtils.closedPrExists(missingClosedBranch);
+    }
+
+}
@@ -18,16 +18,39 @@ public interface BuildToolStrategy {
     BuildToolStrategy GRADLE = new GradleBuildToolStrategy();
     BuildToolStrategy MAVEN = new MavenBuildToolStrategy();
 
+    static BuildToolStrategy forName(String buildToolName) {
+        if (GRADLE.buildToolName().equals(buildToolName)) {
+            return GRADLE;
+        } else if (MAVEN.buildToolName().equals(buildToolName)) {
+            return MAVEN;
+        }
+        throw new IllegalArgumentException(String.format("Unknown build tool '%s'", buildToolName));
+    }
+
     String buildToolName();
 
-    VersionInfo lookupLatestVersion(boolean allowPreRelease) throws IOException;
+    default VersionInfo lookupLatestVersion(boolean allowPreRelease) throws IOException {
+        return lookupLatestVersion(HttpTransport.URL_CONNECTION, defaultMetadataBaseUrl(), allowPreRelease);
+    }
+
+    VersionInfo lookupLatestVersion(HttpTransport transport, String metadataBaseUrl, boolean allowPreRelease) throws IOException;
+
+    String defaultMetadataBaseUrl();
 
     VersionInfo extractCurrentVersion(Path rootProjectDir) throws IOException;
 
+    VersionInfo extractCurrentVersion(Properties wrapperProperties);
+
+    String wrapperPropertiesFile();
+
     void runWrapper(ExecOperations execOperations, Path rootProjectDir, VersionInfo version);
 
+    void writeWrapperFiles(ExecOperations execOperations, HttpTransport transport, WrapperTemplateCache templateCache, Path rootProjectDir, VersionInfo version) throws IOException;
+
     List<Path> wrapperFiles(Path rootProjectDir);
 
+    List<String> sparseCheckoutDirs();
+
     String releaseNotesLink(String buildToolVersion);
 
     static VersionInfo extractBuildToolVersion(Path rootProjectDir, String wrapperPropertiesFile,
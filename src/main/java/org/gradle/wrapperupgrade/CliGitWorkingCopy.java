@@ -0,0 +1,65 @@
+package org.gradle.wrapperupgrade;
+
+import org.gradle.process.ExecOperations;
+import org.gradle.process.internal.ExecException;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.gradle.wrapperupgrade.ExecUtils.execGitCmd;
+
+final class CliGitWorkingCopy implements GitWorkingCopy {
+
+    private final ExecOperations execOperations;
+    private final Path gitCheckoutDir;
+
+    CliGitWorkingCopy(ExecOperations execOperations, Path gitCheckoutDir) {
+        this.execOperations = execOperations;
+        this.gitCheckoutDir = gitCheckoutDir;
+    }
+
+    @Override
+    public void disableCommitSigning() {
+        execGitCmd(execOperations, gitCheckoutDir, "config", "--local", "commit.gpgsign", "false");
+    }
+
+    @Override
+    public boolean hasChanges() {
+        try {
+            // `git diff --exit-code` returns exit code 0 when there's no diff, 1 when there's a diff (in which case execOperations throws an exception)
+            execGitCmd(execOperations, gitCheckoutDir, "diff", "--quiet", "--exit-code");
+            return false;
+        } catch (ExecException e) {
+            return true;
+        }
+    }
+
+    @Override
+    public void add(List<Path> paths) {
+        paths.forEach(p -> execGitCmd(execOperations, gitCheckoutDir, "add", p));
+    }
+
+    @Override
+    public void checkoutBranch(String branch) {
+        execGitCmd(execOperations, gitCheckoutDir, "checkout", "--quiet", "-B", branch);
+    }
+
+    @Override
+    public void commit(String message, List<String> extraArgs) {
+        List<String> argsAndExtraArgs = new ArrayList<>(Arrays.asList("commit", "--quiet", "--signoff", "-m", message));
+        argsAndExtraArgs.addAll(extraArgs);
+        execGitCmd(execOperations, gitCheckoutDir, argsAndExtraArgs.toArray());
+    }
+
+    @Override
+    public void push(String branch) {
+        execGitCmd(execOperations, gitCheckoutDir, "push", "--quiet", "-u", "origin", branch);
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
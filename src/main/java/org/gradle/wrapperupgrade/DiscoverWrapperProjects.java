@@ -0,0 +1,80 @@
+package org.gradle.wrapperupgrade;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.specs.Specs;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.DisableCachingByDefault;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Writes a fleet manifest with the Gradle and Maven wrappers of the repositories of the configured GitHub organizations.
+ */
+@DisableCachingByDefault(because = "Depends on the current state of the GitHub organizations")
+public abstract class DiscoverWrapperProjects extends DefaultTask {
+
+    public DiscoverWrapperProjects() {
+        // The repositories of the organizations are not an input, hence the discovery always runs
+        getOutputs().upToDateWhen(Specs.satisfyNone());
+    }
+
+    @Input
+    public abstract ListProperty<String> getOrganizations();
+
+    @Input
+    public abstract ListProperty<String> getTopics();
+
+    @Input
+    @Optional
+    public abstract Property<String> getNamePattern();
+
+    @OutputFile
+    public abstract RegularFileProperty getManifest();
+
+    @Internal
+    public abstract DirectoryProperty getInventoryDir();
+
+    @Internal
+    public abstract Property<GitHubClientService> getGitHubClientService();
+
+    @TaskAction
+    void discover() throws IOException {
+        List<String> organizations = getOrganizations().get();
+        if (organizations.isEmpty()) {
+            throw new IllegalStateException("No GitHub organization to discover, set 'wrapperUpgrade.discoverOrganizations' or 'wrapperUpgrade.fleetManifest'");
+        }
+        GitHubClientService gitHubClientService = getGitHubClientService().get();
+        WrapperInventory inventory = new WrapperInventory(gitHubClientService.httpClient(), gitHubClientService.gitHub().getApiUrl(),
+            gitHubClientService.token().orElse(null), getInventoryDir().get().getAsFile().toPath());
+        Pattern namePattern = getNamePattern().isPresent() ? Pattern.compile(getNamePattern().get()) : null;
+
+        Path manifestFile = getManifest().get().getAsFile().toPath();
+        Files.createDirectories(manifestFile.getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(manifestFile, StandardCharsets.UTF_8)) {
+            for (String organization : organizations) {
+                WrapperInventory.Discovery discovery = inventory.discover(organization, getTopics().get(), namePattern);
+                for (WrapperInventory.Wrapper wrapper : discovery.wrappers) {
+                    writer.write(WrapperInventory.manifestLine(wrapper));
+                    writer.newLine();
+                }
+                getLogger().lifecycle(String.format("Discovered %d wrappers in the %d repositories of %s (%d repositories scanned since the previous discovery)",
+                    discovery.wrappers.size(), discovery.repositories, organization, discovery.scannedRepositories));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+package org.gradle.wrapperupgrade;
+
+import org.eclipse.jgit.api.AddCommand;
+import org.eclipse.jgit.api.CommitCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.PushCommand;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.transport.PushResult;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteRefUpdate;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the Git operations in the JVM through JGit instead of spawning a Git process for each of them.
+ * Only the arguments of `gitCommitExtraArgs` that have an equivalent in JGit are supported.
+ */
+final class EmbeddedGitWorkingCopy implements GitWorkingCopy {
+
+    private static final Pattern AUTHOR = Pattern.compile("(.*?)\\s*<([^>]*)>");
+
+    private final Path gitCheckoutDir;
+    private final Git git;
+
+    EmbeddedGitWorkingCopy(Path gitCheckoutDir) throws IOException {
+        this.gitCheckoutDir = gitCheckoutDir;
+        this.git = Git.open(gitCheckoutDir.toFile());
+    }
+
+    @Override
+    public void disableCommitSigning() throws IOException {
+        StoredConfig config = git.getRepository().getConfig();
+        config.setBoolean("commit", null, "gpgsign", false);
+        config.save();
+    }
+
+    @Override
+    public boolean hasChanges() throws IOException {
+        Status status = call(() -> git.status().call());
+        return !status.getModified().isEmpty() || !status.getMissing().isEmpty();
+    }
+
+    @Override
+    public void add(List<Path> paths) throws IOException {
+        AddCommand add = git.add();
+        // With `update`, the deleted files are staged as well, as `git add` does
+        AddCommand update = git.add().setUpdate(true);
+        for (Path path : paths) {
+            String pattern = gitCheckoutDir.relativize(gitCheckoutDir.resolve(path)).toString().replace('\\', '/');
+            add.addFilepattern(pattern);
+            update.addFilepattern(pattern);
+        }
+        call(add::call);
+        call(update::call);
+    }
+
+    @Override
+    public void checkoutBranch(String branch) throws IOException {
+        call(() -> git.checkout().setCreateBranch(true).setForceRefUpdate(true).setName(branch).call());
+    }
+
+    @Override
+    public void commit(String message, List<String> extraArgs) throws IOException {
+        PersonIdent committer = new PersonIdent(git.getRepository());
+        CommitCommand commit = git.commit()
+            .setCommitter(committer)
+            .setMessage(message + "\n\nSigned-off-by: " + committer.getName() + " <" + committer.getEmailAddress() + ">");
+        for (String arg : extraArgs) {
+            applyCommitArg(commit, arg);
+        }
+        call(commit::call);
+    }
+
+    static void applyCommitArg(CommitCommand commit, String arg) {
+        if (arg.equals("-S") || arg.equals("--gpg-sign")) {
+            commit.setSign(true);
+        } else if (arg.startsWith("--gpg-sign=") || arg.startsWith("-S")) {
+            commit.setSign(true);
+            commit.setSigningKey(arg.substring(arg.startsWith("-S") ? 2 : "--gpg-sign=".length()));
+        } else if (arg.equals("--no-gpg-sign")) {
+            commit.setSign(false);
+        } else if (arg.equals("-n") || arg.equals("--no-verify")) {
+            commit.setNoVerify(true);
+        } else if (arg.startsWith("--author=")) {
+            Matcher matcher = AUTHOR.matcher(arg.substring("--author=".length()));
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException(String.format("Unsupported author '%s' with the embedded Git engine, expected 'Name <email>'", arg));
+            }
+            commit.setAuthor(matcher.group(1), matcher.group(2));
+        } else {
+            throw new IllegalArgumentException(String.format("Unsupported Git commit argument '%s' with the embedded Git engine", arg));
+        }
+    }
+
+    @Override
+    public void push(String branch) throws IOException {
+        PushCommand push = git.push().setRemote("origin").setRefSpecs(new RefSpec("refs/heads/" + branch + ":refs/heads/" + branch));
+        Optional.ofNullable(System.getenv(GitHubClientService.GIT_TOKEN_ENV_VAR))
+            .ifPresent(token -> push.setCredentialsProvider(new UsernamePasswordCredentialsProvider("x-access-token", token)));
+        for (PushResult result : call(push::call)) {
+            for (RemoteRefUpdate update : result.getRemoteUpdates()) {
+                if (update.getStatus() != RemoteRefUpdate.Status.OK && update.getStatus() != RemoteRefUpdate.Status.UP_TO_DATE) {
+                    throw new IOException(String.format("Could not push branch '%s': %s%s", branch, update.getStatus(),
+                        update.getMessage() != null ? " (" + update.getMessage() + ")" : ""));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        git.close();
+    }
+
+    private interface GitCommand<T> {
+        T call() throws GitAPIException;
+    }
+
+    private static <T> T call(GitCommand<T> command) throws IOException {
+        try {
+            return command.call();
+        } catch (GitAPIException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+}
@@ -2,6 +2,10 @@ package org.gradle.wrapperupgrade;
 
 import org.gradle.process.ExecOperations;
 
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.LinkedList;
@@ -21,7 +25,20 @@ final class ExecUtils {
         execCmd(execOperations, workingDir, "git", args);
     }
 
+    /**
+     * Returns the standard output of the Git command.
+     */
+    static String execGitCmdForOutput(ExecOperations execOperations, Path workingDir, Object... args) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        execCmd(execOperations, workingDir, output, "git", args);
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
     private static void execCmd(ExecOperations execOperations, Path workingDir, String cmd, Object... args) {
+        execCmd(execOperations, workingDir, null, cmd, args);
+    }
+
+    private static void execCmd(ExecOperations execOperations, Path workingDir, @Nullable OutputStream output, String cmd, Object... args) {
         List<Object> cmdLine = new LinkedList<>();
         cmdLine.add(cmd);
         cmdLine.addAll(Arrays.asList(args));
@@ -29,6 +46,9 @@ final class ExecUtils {
             execSpec -> {
                 execSpec.workingDir(workingDir);
                 execSpec.commandLine(cmdLine);
+                if (output != null) {
+                    execSpec.setStandardOutput(output);
+                }
             });
     }
 
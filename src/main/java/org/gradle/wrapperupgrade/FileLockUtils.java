@@ -0,0 +1,80 @@
+package org.gradle.wrapperupgrade;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+final class FileLockUtils {
+
+    private static final ConcurrentMap<Path, Object> LOCKS = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the given action while holding an exclusive lock on the given file, guarding against concurrent access
+     * from within this build as well as from other builds sharing the same file.
+     */
+    static void withFileLock(Path lockFile, IOAction action) {
+        synchronized (LOCKS.computeIfAbsent(lockFile.toAbsolutePath().normalize(), f -> new Object())) {
+            try {
+                Files.createDirectories(lockFile.getParent());
+                try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                     FileLock ignored = channel.lock()) {
+                    action.run();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Tries to lock the given file until the returned channel is closed, for resources that do not support
+     * concurrent access from several processes. Returns an empty optional if another build holds the lock.
+     */
+    static Optional<FileChannel> tryLockForBuild(Path lockFile) throws IOException {
+        Files.createDirectories(lockFile.getParent());
+        FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (channel.tryLock() != null) {
+                return Optional.of(channel);
+            }
+        } catch (OverlappingFileLockException e) {
+            // Locked by another build of this daemon
+        }
+        channel.close();
+        return Optional.empty();
+    }
+
+    /**
+     * Takes a shared lock on the given file until the returned channel is closed, so that other builds using the same resource
+     * can go on while {@link #tryLockForBuild(Path)} fails. Returns an empty optional if this daemon already holds a lock on the file.
+     */
+    static Optional<FileChannel> lockSharedForBuild(Path lockFile) throws IOException {
+        Files.createDirectories(lockFile.getParent());
+        FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            channel.lock(0, Long.MAX_VALUE, true);
+            return Optional.of(channel);
+        } catch (OverlappingFileLockException e) {
+            channel.close();
+            return Optional.empty();
+        }
+    }
+
+    interface IOAction {
+
+        void run() throws IOException;
+
+    }
+
+    private FileLockUtils() {
+    }
+
+}
@@ -0,0 +1,217 @@
+package org.gradle.wrapperupgrade;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the projects of a fleet manifest one at a time, so that only the projects being upgraded are held in memory.
+ * The manifest has one JSON object per line, with the same fields as the projects declared in the `wrapperUpgrade` extension:
+ * <pre>
+ * {"name": "my-project", "buildTool": "gradle", "repo": "my-org/my-project", "dir": ".", "baseBranch": "main", "options": {"labels": ["dependencies"]}}
+ * </pre>
+ */
+final class FleetManifest implements Closeable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9._-]+");
+
+    private static final Set<String> FIELDS = new HashSet<>(Arrays.asList("name", "buildTool", "repo", "dir", "baseBranch", "options"));
+    private static final Set<String> BOOLEAN_OPTIONS = new HashSet<>(Arrays.asList("allowPreRelease", "recreateClosedPullRequest", "sparseCheckout",
+        "useWrapperTemplates", "remoteVersionCheck", "embeddedGit", "remoteCommit"));
+    private static final Set<String> LIST_OPTIONS = new HashSet<>(Arrays.asList("gitCommitExtraArgs", "labels", "assignees", "reviewers", "sparseCheckoutDirs"));
+
+    private final Path manifestFile;
+    private final BufferedReader reader;
+    private int lineNumber;
+
+    private FleetManifest(Path manifestFile, BufferedReader reader) {
+        this.manifestFile = manifestFile;
+        this.reader = reader;
+    }
+
+    static FleetManifest open(Path manifestFile) throws IOException {
+        return new FleetManifest(manifestFile, Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the next project of the manifest, or `null` at the end of the manifest. Blank lines are skipped.
+     * An invalid project fails with its line number, and the next call reads the following line.
+     */
+    @Nullable
+    Entry next() throws IOException {
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lineNumber++;
+            if (!line.trim().isEmpty()) {
+                try {
+                    return parse(line);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(String.format("Invalid project at line %d of %s: %s", lineNumber, manifestFile, e.getMessage()), e);
+                }
+            }
+        }
+        return null;
+    }
+
+    static Entry parse(String line) {
+        JsonNode node;
+        try {
+            node = MAPPER.readTree(line);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e.getOriginalMessage(), e);
+        }
+        if (!node.isObject()) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        checkFields(node, FIELDS);
+        BuildToolStrategy buildToolStrategy = buildTool(requiredText(node, "buildTool"));
+        String repo = requiredText(node, "repo");
+        String dir = text(node, "dir", ".");
+        String baseBranch = text(node, "baseBranch", "main");
+        String name = text(node, "name", defaultName(repo, dir));
+        // The name is part of the path of the clone of the project, as well as of the pull request branches
+        if (!NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException(String.format("Invalid name '%s', expected letters, digits, '.', '_' or '-'", name));
+        }
+        JsonNode options = node.path("options");
+        if (!options.isMissingNode() && !options.isObject()) {
+            throw new IllegalArgumentException("Expected 'options' to be a JSON object");
+        }
+        Set<String> optionNames = new HashSet<>(BOOLEAN_OPTIONS);
+        optionNames.addAll(LIST_OPTIONS);
+        checkFields(options, optionNames);
+        options.fields().forEachRemaining(option -> {
+            JsonNode value = option.getValue();
+            if (BOOLEAN_OPTIONS.contains(option.getKey()) && !value.isBoolean() && !value.isNull()) {
+                throw new IllegalArgumentException(String.format("Expected option '%s' to be a boolean", option.getKey()));
+            }
+            if (LIST_OPTIONS.contains(option.getKey()) && !value.isArray() && !value.isNull()) {
+                throw new IllegalArgumentException(String.format("Expected option '%s' to be an array", option.getKey()));
+            }
+        });
+        return new Entry(name, buildToolStrategy, repo, dir, baseBranch, options);
+    }
+
+    /**
+     * Returns the manifest line of a project, without its name if `null`, since the name is then derived from the repository and the directory.
+     */
+    static String line(@Nullable String name, BuildToolStrategy buildToolStrategy, String repo, String dir, String baseBranch, Map<String, Boolean> booleanOptions) {
+        ObjectNode line = MAPPER.createObjectNode();
+        if (name != null) {
+            line.put("name", name);
+        }
+        line.put("buildTool", buildToolStrategy.buildToolName().toLowerCase(Locale.ROOT))
+            .put("repo", repo)
+            .put("dir", dir)
+            .put("baseBranch", baseBranch);
+        if (!booleanOptions.isEmpty()) {
+            booleanOptions.forEach(line.putObject("options")::put);
+        }
+        try {
+            return MAPPER.writeValueAsString(line);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static BuildToolStrategy buildTool(String buildTool) {
+        for (BuildToolStrategy strategy : Arrays.asList(BuildToolStrategy.GRADLE, BuildToolStrategy.MAVEN)) {
+            if (strategy.buildToolName().equalsIgnoreCase(buildTool)) {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown build tool '%s', expected 'gradle' or 'maven'", buildTool));
+    }
+
+    /**
+     * The name of the project is part of the pull request branches, hence is derived from the repository and the directory if not set.
+     */
+    private static String defaultName(String repo, String dir) {
+        String repoName = repo.replaceAll("(\\.git)?/*$", "");
+        repoName = repoName.substring(repoName.lastIndexOf('/') + 1);
+        String path = dir.replaceAll("^\\./?|/$", "");
+        return (path.isEmpty() ? repoName : repoName + "-" + path).replaceAll("[^A-Za-z0-9._-]", "-");
+    }
+
+    private static void checkFields(JsonNode node, Set<String> fields) {
+        for (Iterator<String> names = node.fieldNames(); names.hasNext(); ) {
+            String name = names.next();
+            if (!fields.contains(name)) {
+                throw new IllegalArgumentException(String.format("Unknown field '%s'", name));
+            }
+        }
+    }
+
+    private static String requiredText(JsonNode node, String field) {
+        if (!node.path(field).isTextual()) {
+            throw new IllegalArgumentException(String.format("Expected field '%s' to be a string", field));
+        }
+        return node.get(field).asText();
+    }
+
+    private static String text(JsonNode node, String field, String defaultValue) {
+        return node.has(field) ? requiredText(node, field) : defaultValue;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    static final class Entry {
+
+        final String name;
+        final BuildToolStrategy buildToolStrategy;
+        final String repo;
+        final String dir;
+        final String baseBranch;
+        private final JsonNode options;
+
+        private Entry(String name, BuildToolStrategy buildToolStrategy, String repo, String dir, String baseBranch, JsonNode options) {
+            this.name = name;
+            this.buildToolStrategy = buildToolStrategy;
+            this.repo = repo;
+            this.dir = dir;
+            this.baseBranch = baseBranch;
+            this.options = options;
+        }
+
+        @Nullable
+        Boolean booleanOption(String option) {
+            JsonNode value = options.path(option);
+            return value.isBoolean() ? value.asBoolean() : null;
+        }
+
+        List<String> listOption(String option) {
+            JsonNode value = options.path(option);
+            if (!value.isArray()) {
+                return Collections.emptyList();
+            }
+            List<String> values = new ArrayList<>();
+            value.forEach(element -> values.add(element.asText()));
+            return values;
+        }
+
+    }
+
+}
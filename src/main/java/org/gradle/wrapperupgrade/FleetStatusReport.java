@@ -0,0 +1,150 @@
+package org.gradle.wrapperupgrade;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.gradle.util.internal.VersionNumber;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The versions, staleness and pending pull requests of the wrappers of the configured projects, written as JSON and HTML reports.
+ */
+final class FleetStatusReport {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    enum Status {
+        UP_TO_DATE, OUTDATED, UNKNOWN
+    }
+
+    private final Instant time;
+    private final List<ProjectStatus> projects;
+
+    FleetStatusReport(Instant time, List<ProjectStatus> projects) {
+        this.time = time;
+        this.projects = projects;
+    }
+
+    long count(Status status) {
+        return projects.stream().filter(project -> project.status() == status).count();
+    }
+
+    long pendingPullRequests() {
+        return projects.stream().mapToLong(project -> project.pullRequests.size()).sum();
+    }
+
+    void writeJson(Path reportFile) throws IOException {
+        ObjectNode report = MAPPER.createObjectNode();
+        report.put("time", time.toString());
+        ArrayNode projectsNode = report.putArray("projects");
+        for (ProjectStatus project : projects) {
+            ObjectNode projectNode = projectsNode.addObject()
+                .put("project", project.project)
+                .put("buildTool", project.buildTool)
+                .put("repository", project.repository)
+                .put("dir", project.dir)
+                .put("baseBranch", project.baseBranch)
+                .put("usedVersion", project.usedVersion)
+                .put("latestVersion", project.latestVersion)
+                .put("status", project.status().name());
+            if (project.failure != null) {
+                projectNode.put("failure", project.failure);
+            }
+            ArrayNode pullRequests = projectNode.putArray("pullRequests");
+            project.pullRequests.forEach(pr -> pullRequests.addObject()
+                .put("number", pr.number)
+                .put("branch", pr.headRef)
+                .put("url", pr.htmlUrl));
+        }
+        ObjectNode totals = report.putObject("totals");
+        totals.put("projects", projects.size());
+        for (Status status : Status.values()) {
+            totals.put(status.name(), count(status));
+        }
+        totals.put("pullRequests", pendingPullRequests());
+        Files.createDirectories(reportFile.getParent());
+        MAPPER.writeValue(reportFile.toFile(), report);
+    }
+
+    void writeHtml(Path reportFile) throws IOException {
+        Files.createDirectories(reportFile.getParent());
+        try (Writer writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+            writer.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"utf-8\">\n<title>Wrapper upgrade report</title>\n<style>\n" +
+                "body { font-family: sans-serif; }\n" +
+                "table { border-collapse: collapse; }\n" +
+                "th, td { border: 1px solid #ccc; padding: 4px 8px; text-align: left; }\n" +
+                ".UP_TO_DATE { background: #dfd; }\n" +
+                ".OUTDATED { background: #fed; }\n" +
+                ".UNKNOWN { background: #eee; }\n" +
+                "</style>\n</head>\n<body>\n");
+            writer.write(String.format("<h1>Wrapper upgrade report</h1>\n<p>%s: %d projects, %d up to date, %d outdated, %d unknown, %d pending pull requests</p>\n",
+                time, projects.size(), count(Status.UP_TO_DATE), count(Status.OUTDATED), count(Status.UNKNOWN), pendingPullRequests()));
+            writer.write("<table>\n<tr><th>Project</th><th>Build tool</th><th>Repository</th><th>Directory</th><th>Base branch</th>" +
+                "<th>Used version</th><th>Latest version</th><th>Status</th><th>Pull requests</th></tr>\n");
+            for (ProjectStatus project : projects) {
+                writer.write(String.format("<tr class=\"%s\"><td>%s</td><td>%s</td><td>%s</td><td>%s</td><td>%s</td><td>%s</td><td>%s</td><td>%s</td><td>",
+                    project.status(), escape(project.project), escape(project.buildTool), escape(project.repository), escape(project.dir), escape(project.baseBranch),
+                    escape(project.usedVersion), escape(project.latestVersion), project.failure != null ? escape(project.failure) : project.status()));
+                for (PullRequestInfo pr : project.pullRequests) {
+                    writer.write(String.format("<a href=\"%s\">#%d %s</a><br>", escape(pr.htmlUrl), pr.number, escape(pr.headRef)));
+                }
+                writer.write("</td></tr>\n");
+            }
+            writer.write("</table>\n</body>\n</html>\n");
+        }
+    }
+
+    private static String escape(@Nullable String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    static final class ProjectStatus {
+
+        final String project;
+        final String buildTool;
+        final String repository;
+        final String dir;
+        final String baseBranch;
+        @Nullable
+        final String usedVersion;
+        @Nullable
+        final String latestVersion;
+        final List<PullRequestInfo> pullRequests;
+        @Nullable
+        final String failure;
+
+        ProjectStatus(String project, String buildTool, String repository, String dir, String baseBranch,
+                      @Nullable String usedVersion, @Nullable String latestVersion, List<PullRequestInfo> pullRequests, @Nullable String failure) {
+            this.project = project;
+            this.buildTool = buildTool;
+            this.repository = repository;
+            this.dir = dir;
+            this.baseBranch = baseBranch;
+            this.usedVersion = usedVersion;
+            this.latestVersion = latestVersion;
+            this.pullRequests = pullRequests;
+            this.failure = failure;
+        }
+
+        Status status() {
+            if (usedVersion == null || latestVersion == null) {
+                return Status.UNKNOWN;
+            }
+            return VersionNumber.parse(usedVersion).compareTo(VersionNumber.parse(latestVersion)) >= 0 ? Status.UP_TO_DATE : Status.OUTDATED;
+        }
+
+    }
+
+}
@@ -0,0 +1,58 @@
+package org.gradle.wrapperupgrade;
+
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Bounds the number of upgrades of a fleet running at a time. The fleet task takes a slot of its window before submitting each upgrade,
+ * and each upgrade gives its slot back as soon as it completes, so that the next project starts without waiting for the other upgrades.
+ */
+public abstract class FleetWindowService implements BuildService<BuildServiceParameters.None> {
+
+    private final Map<String, Semaphore> windows = new ConcurrentHashMap<>();
+
+    Window open(String key, int size) {
+        Semaphore slots = new Semaphore(size);
+        windows.put(key, slots);
+        return new Window(key, slots);
+    }
+
+    /**
+     * Gives back the slot of a completed upgrade.
+     */
+    void release(String key) {
+        Semaphore slots = windows.get(key);
+        if (slots != null) {
+            slots.release();
+        }
+    }
+
+    final class Window implements AutoCloseable {
+
+        private final String key;
+        private final Semaphore slots;
+
+        private Window(String key, Semaphore slots) {
+            this.key = key;
+            this.slots = slots;
+        }
+
+        /**
+         * Waits until fewer upgrades than the size of the window are running.
+         */
+        void acquire() throws InterruptedException {
+            slots.acquire();
+        }
+
+        @Override
+        public void close() {
+            windows.remove(key, slots);
+        }
+
+    }
+
+}
@@ -0,0 +1,153 @@
+package org.gradle.wrapperupgrade;
+
+import org.gradle.process.ExecOperations;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.gradle.wrapperupgrade.ExecUtils.execGitCmd;
+import static org.gradle.wrapperupgrade.ExecUtils.execGitCmdForOutput;
+import static org.gradle.wrapperupgrade.FileLockUtils.withFileLock;
+
+final class GitCloneUtils {
+
+    /**
+     * Clones the base branch of the given repository, checking out only the given paths if there are any.
+     * Returns the size of the cloned Git objects.
+     */
+    static long cloneGitProject(ExecOperations execOperations, String gitUrl, String baseBranch, Path executionRootDir, Path gitCheckoutDir, List<String> sparseCheckoutPaths) throws IOException {
+        if (sparseCheckoutPaths.isEmpty()) {
+            execGitCmd(execOperations, executionRootDir, "clone", "--quiet", "--depth", "1", "-b", baseBranch, gitUrl, gitCheckoutDir);
+        } else {
+            // Blobs are only downloaded for the files checked out, and the sparse checkout starts with the files of the root directory only
+            execGitCmd(execOperations, executionRootDir, "clone", "--quiet", "--depth", "1", "--filter=blob:none", "--sparse", "-b", baseBranch, gitUrl, gitCheckoutDir);
+            setSparseCheckoutPaths(execOperations, gitCheckoutDir, sparseCheckoutPaths);
+        }
+        return directorySize(gitCheckoutDir.resolve(".git"));
+    }
+
+    /**
+     * Checks out the base branch of the given repository as a worktree of a bare repository kept in the given cache directory,
+     * so that only the changes since the previous checkout of the repository are fetched.
+     * Returns the size of the Git objects fetched into the cache.
+     */
+    static long checkoutFromRepositoryCache(ExecOperations execOperations, String gitUrl, String baseBranch, Path repositoryCacheDir, Path gitCheckoutDir, List<String> sparseCheckoutPaths) throws IOException {
+        Path repositoryDir = repositoryCacheDir.resolve(sha256(gitUrl));
+        AtomicLong fetchedBytes = new AtomicLong();
+        withFileLock(repositoryDir.resolveSibling(repositoryDir.getFileName() + ".lock"), () -> {
+            long previousSize = directorySize(repositoryDir.resolve("objects"));
+            if (Files.isRegularFile(repositoryDir.resolve("HEAD"))) {
+                execGitCmd(execOperations, repositoryDir, "fetch", "--quiet", "--depth", "1", "origin", "+refs/heads/" + baseBranch + ":refs/heads/" + baseBranch);
+                execGitCmd(execOperations, repositoryDir, "worktree", "prune");
+            } else {
+                List<Object> args = new ArrayList<>(Arrays.asList("clone", "--quiet", "--bare", "--depth", "1"));
+                if (!sparseCheckoutPaths.isEmpty()) {
+                    args.add("--filter=blob:none");
+                }
+                args.addAll(Arrays.asList("-b", baseBranch, gitUrl, repositoryDir));
+                execGitCmd(execOperations, repositoryCacheDir, args.toArray());
+            }
+            if (sparseCheckoutPaths.isEmpty()) {
+                execGitCmd(execOperations, repositoryDir, "worktree", "add", "--quiet", "--detach", gitCheckoutDir, baseBranch);
+            } else {
+                execGitCmd(execOperations, repositoryDir, "worktree", "add", "--quiet", "--detach", "--no-checkout", gitCheckoutDir, baseBranch);
+            }
+            fetchedBytes.set(Math.max(0, directorySize(repositoryDir.resolve("objects")) - previousSize));
+        });
+        if (!sparseCheckoutPaths.isEmpty()) {
+            setSparseCheckoutPaths(execOperations, gitCheckoutDir, sparseCheckoutPaths);
+            execGitCmd(execOperations, gitCheckoutDir, "read-tree", "-mu", "HEAD");
+        }
+        return fetchedBytes.get();
+    }
+
+    /**
+     * Restores a working copy checked out by a previous upgrade to the head of the base branch, discarding the changes and untracked files
+     * left by that upgrade, and adds the given paths to its sparse checkout if there are any.
+     */
+    static void resetToBaseBranch(ExecOperations execOperations, String baseBranch, Path gitCheckoutDir, List<String> sparseCheckoutPaths) {
+        execGitCmd(execOperations, gitCheckoutDir, "checkout", "--quiet", "--force", "--detach", "refs/heads/" + baseBranch);
+        execGitCmd(execOperations, gitCheckoutDir, "clean", "--quiet", "--force", "-d");
+        if (!sparseCheckoutPaths.isEmpty()) {
+            List<Object> args = new ArrayList<>(Arrays.asList("sparse-checkout", "add"));
+            args.addAll(sparseCheckoutPaths);
+            execGitCmd(execOperations, gitCheckoutDir, args.toArray());
+        }
+    }
+
+    /**
+     * Looks up the head commits of the given branches of the given repository without cloning it.
+     * Returns the commit of each existing branch.
+     */
+    static Map<String, String> remoteBranchHeads(ExecOperations execOperations, String gitUrl, Path executionRootDir, List<String> branches) {
+        List<Object> args = new ArrayList<>(Arrays.asList("ls-remote", "--heads", gitUrl));
+        branches.forEach(branch -> args.add("refs/heads/" + branch));
+        Map<String, String> heads = new HashMap<>();
+        for (String line : execGitCmdForOutput(execOperations, executionRootDir, args.toArray()).split("\\r?\\n")) {
+            String[] commitAndRef = line.trim().split("\\s+");
+            if (commitAndRef.length == 2 && commitAndRef[1].startsWith("refs/heads/")) {
+                heads.put(commitAndRef[1].substring("refs/heads/".length()), commitAndRef[0]);
+            }
+        }
+        return heads;
+    }
+
+    /**
+     * In cone mode, checking out a directory also checks out the files directly contained in all its parent directories,
+     * hence the wrapper scripts and build files of the root project directory are included.
+     */
+    static List<String> sparseCheckoutPaths(String rootProjectDir, List<String> dirs) {
+        Path root = Paths.get(rootProjectDir);
+        return dirs.stream()
+            .map(dir -> root.resolve(dir).normalize())
+            .map(path -> path.toString().replace('\\', '/'))
+            .filter(path -> !path.isEmpty())
+            .distinct()
+            .collect(Collectors.toList());
+    }
+
+    private static void setSparseCheckoutPaths(ExecOperations execOperations, Path gitCheckoutDir, List<String> sparseCheckoutPaths) {
+        List<Object> args = new ArrayList<>(Arrays.asList("sparse-checkout", "set"));
+        args.addAll(sparseCheckoutPaths);
+        execGitCmd(execOperations, gitCheckoutDir, args.toArray());
+    }
+
+    private static long directorySize(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    static String sha256(String value) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private GitCloneUtils() {
+    }
+
+}
@@ -0,0 +1,270 @@
+package org.gradle.wrapperupgrade;
+
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.UserConfig;
+import org.eclipse.jgit.util.SystemReader;
+import org.kohsuke.github.GHCommit;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GHTree;
+import org.kohsuke.github.GHTreeBuilder;
+import org.kohsuke.github.GHTreeEntry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Downloads the wrapper files of the base branch through the Git Data API into a scratch directory, and commits
+ * the changed files to a new branch through the same API, so that the repository is neither cloned nor pushed to.
+ * Nothing is written to the repository before the branch is pushed, hence a dry run leaves no trace.
+ */
+final class GitDataApiWorkingCopy implements GitWorkingCopy {
+
+    private static final Pattern AUTHOR = Pattern.compile("(.*?)\\s*<([^>]*)>");
+    private static final String EXECUTABLE_MODE = "100755";
+    private static final boolean WINDOWS = File.separatorChar == '\\';
+
+    private final GHRepository repository;
+    private final Path checkoutDir;
+    private final List<String> wrapperPaths;
+    private final String baseCommitSha;
+    private final String baseTreeSha;
+    private final Map<String, BlobInfo> baseBlobs = new LinkedHashMap<>();
+    private final Map<String, GHTree> trees = new HashMap<>();
+    private final List<String> stagedPaths = new ArrayList<>();
+    private final UserConfig user;
+    private long downloadedBytes;
+    private String commitMessage;
+    private String authorName;
+    private String authorEmail;
+
+    private GitDataApiWorkingCopy(GHRepository repository, Path checkoutDir, List<String> wrapperPaths, String baseCommitSha, GHTree baseTree, Config gitConfig) {
+        this.repository = repository;
+        this.checkoutDir = checkoutDir;
+        this.wrapperPaths = wrapperPaths;
+        this.baseCommitSha = baseCommitSha;
+        this.baseTreeSha = baseTree.getSha();
+        this.trees.put("", baseTree);
+        this.user = gitConfig.get(UserConfig.KEY);
+    }
+
+    /**
+     * Downloads the given wrapper files and directories, relative to the repository root, from the head of the given branch.
+     */
+    static GitDataApiWorkingCopy checkout(GHRepository repository, String baseBranch, Path checkoutDir, List<String> wrapperPaths) throws IOException {
+        try {
+            // The commit identity is read from the Git configuration of the user, as with the Git CLI
+            return checkout(repository, baseBranch, checkoutDir, wrapperPaths, SystemReader.getInstance().getUserConfig());
+        } catch (ConfigInvalidException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    static GitDataApiWorkingCopy checkout(GHRepository repository, String baseBranch, Path checkoutDir, List<String> wrapperPaths, Config gitConfig) throws IOException {
+        String baseCommitSha = repository.getRef("heads/" + baseBranch).getObject().getSha();
+        GitDataApiWorkingCopy workingCopy = new GitDataApiWorkingCopy(repository, checkoutDir, wrapperPaths, baseCommitSha, repository.getTree(baseCommitSha), gitConfig);
+        for (String path : wrapperPaths) {
+            workingCopy.download(path);
+        }
+        return workingCopy;
+    }
+
+    long downloadedBytes() {
+        return downloadedBytes;
+    }
+
+    private void download(String path) throws IOException {
+        int separator = path.lastIndexOf('/');
+        Optional<GHTree> parent = tree(separator < 0 ? "" : path.substring(0, separator));
+        if (!parent.isPresent()) {
+            return;
+        }
+        GHTreeEntry entry = parent.get().getEntry(path.substring(separator + 1));
+        if (entry == null) {
+            return;
+        }
+        if ("tree".equals(entry.getType())) {
+            for (GHTreeEntry child : repository.getTreeRecursive(entry.getSha(), 1).getTree()) {
+                if ("blob".equals(child.getType())) {
+                    downloadBlob(path + "/" + child.getPath(), child);
+                }
+            }
+        } else if ("blob".equals(entry.getType())) {
+            downloadBlob(path, entry);
+        }
+    }
+
+    private Optional<GHTree> tree(String dir) throws IOException {
+        if (trees.containsKey(dir)) {
+            return Optional.ofNullable(trees.get(dir));
+        }
+        int separator = dir.lastIndexOf('/');
+        Optional<GHTree> parent = tree(separator < 0 ? "" : dir.substring(0, separator));
+        GHTreeEntry entry = parent.isPresent() ? parent.get().getEntry(dir.substring(separator + 1)) : null;
+        GHTree tree = entry != null && "tree".equals(entry.getType()) ? entry.asTree() : null;
+        trees.put(dir, tree);
+        return Optional.ofNullable(tree);
+    }
+
+    private void downloadBlob(String path, GHTreeEntry entry) throws IOException {
+        Path file = checkoutDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        try (InputStream is = repository.readBlob(entry.getSha())) {
+            downloadedBytes += Files.copy(is, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        boolean executable = EXECUTABLE_MODE.equals(entry.getMode());
+        if (executable && !WINDOWS) {
+            file.toFile().setExecutable(true);
+        }
+        baseBlobs.put(path, new BlobInfo(entry.getSha(), executable));
+    }
+
+    @Override
+    public void disableCommitSigning() {
+        // Commits created through the API are not signed
+    }
+
+    @Override
+    public boolean hasChanges() throws IOException {
+        return !changes(wrapperPaths).isEmpty();
+    }
+
+    /**
+     * Returns the new content of the files that differ from the base branch under the given paths, or `null` for the deleted files.
+     */
+    private Map<String, BlobContent> changes(List<String> paths) throws IOException {
+        Map<String, BlobContent> changes = new LinkedHashMap<>();
+        TreeSet<String> candidates = new TreeSet<>();
+        for (String path : paths) {
+            baseBlobs.keySet().stream().filter(p -> isUnder(p, path)).forEach(candidates::add);
+            Path file = checkoutDir.resolve(path);
+            if (Files.isDirectory(file)) {
+                try (Stream<Path> files = Files.walk(file)) {
+                    candidates.addAll(files.filter(Files::isRegularFile)
+                        .map(f -> checkoutDir.relativize(f).toString().replace('\\', '/'))
+                        .collect(Collectors.toList()));
+                }
+            } else if (Files.isRegularFile(file)) {
+                candidates.add(path);
+            }
+        }
+        for (String path : candidates) {
+            Path file = checkoutDir.resolve(path);
+            BlobInfo base = baseBlobs.get(path);
+            if (!Files.isRegularFile(file)) {
+                changes.put(path, null);
+                continue;
+            }
+            byte[] content = Files.readAllBytes(file);
+            boolean executable = WINDOWS ? base != null && base.executable : Files.isExecutable(file);
+            String sha = new ObjectInserter.Formatter().idFor(Constants.OBJ_BLOB, content).name();
+            if (base == null || !base.sha.equals(sha) || base.executable != executable) {
+                changes.put(path, new BlobContent(content, executable));
+            }
+        }
+        return changes;
+    }
+
+    private static boolean isUnder(String path, String dir) {
+        return path.equals(dir) || path.startsWith(dir + "/");
+    }
+
+    @Override
+    public void add(List<Path> paths) {
+        paths.forEach(p -> stagedPaths.add(checkoutDir.relativize(checkoutDir.resolve(p).normalize()).toString().replace('\\', '/')));
+    }
+
+    @Override
+    public void checkoutBranch(String branch) {
+        // The branch is created when pushing
+    }
+
+    @Override
+    public void commit(String message, List<String> extraArgs) {
+        if (user.isCommitterNameImplicit() || user.isCommitterEmailImplicit()) {
+            throw new IllegalStateException("The Git user name and email must be configured to sign off the commit");
+        }
+        authorName = user.getCommitterName();
+        authorEmail = user.getCommitterEmail();
+        for (String arg : extraArgs) {
+            if (arg.equals("--no-gpg-sign") || arg.equals("-n") || arg.equals("--no-verify")) {
+                continue;
+            }
+            Matcher matcher = arg.startsWith("--author=") ? AUTHOR.matcher(arg.substring("--author=".length())) : null;
+            if (matcher == null || !matcher.matches()) {
+                throw new IllegalArgumentException(String.format("Unsupported Git commit argument '%s' when committing through the GitHub API", arg));
+            }
+            authorName = matcher.group(1);
+            authorEmail = matcher.group(2);
+        }
+        commitMessage = message + "\n\nSigned-off-by: " + user.getCommitterName() + " <" + user.getCommitterEmail() + ">";
+    }
+
+    @Override
+    public void push(String branch) throws IOException {
+        GHTreeBuilder tree = repository.createTree().baseTree(baseTreeSha);
+        for (Map.Entry<String, BlobContent> change : changes(stagedPaths).entrySet()) {
+            if (change.getValue() == null) {
+                tree.delete(change.getKey());
+            } else {
+                tree.add(change.getKey(), change.getValue().content, change.getValue().executable);
+            }
+        }
+        Date now = new Date();
+        GHCommit commit = repository.createCommit()
+            .message(commitMessage)
+            .tree(tree.create().getSha())
+            .parent(baseCommitSha)
+            .author(authorName, authorEmail, now)
+            .committer(user.getCommitterName(), user.getCommitterEmail(), now)
+            .create();
+        repository.createRef("refs/heads/" + branch, commit.getSHA1());
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static final class BlobInfo {
+
+        private final String sha;
+        private final boolean executable;
+
+        private BlobInfo(String sha, boolean executable) {
+            this.sha = sha;
+            this.executable = executable;
+        }
+
+    }
+
+    private static final class BlobContent {
+
+        private final byte[] content;
+        private final boolean executable;
+
+        private BlobContent(byte[] content, boolean executable) {
+            this.content = content;
+            this.executable = executable;
+        }
+
+    }
+
+}
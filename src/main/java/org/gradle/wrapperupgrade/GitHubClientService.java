@@ -0,0 +1,116 @@
+package org.gradle.wrapperupgrade;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.kohsuke.github.GHUser;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.extras.okhttp3.OkHttpGitHubConnector;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares one GitHub client between all upgrade tasks of a build, so that connections are pooled across repositories
+ * and responses are cached on disk: unchanged resources are revalidated with their ETag, and the resulting
+ * `304 Not Modified` responses do not count against the rate limit.
+ */
+public abstract class GitHubClientService implements BuildService<GitHubClientService.Params>, AutoCloseable {
+
+    public interface Params extends BuildServiceParameters {
+
+        DirectoryProperty getCacheDir();
+
+        /**
+         * The GitHub API URL, for GitHub Enterprise Server or for a stand-in server in tests.
+         */
+        Property<String> getApiUrl();
+
+    }
+
+    static final String GIT_TOKEN_ENV_VAR = "WRAPPER_UPGRADE_GIT_TOKEN";
+
+    private static final Logger LOGGER = Logging.getLogger(GitHubClientService.class);
+
+    private static final long CACHE_SIZE = 50L * 1024 * 1024;
+
+    private final Map<String, GHUser> users = new ConcurrentHashMap<>();
+
+    private OkHttpClient httpClient;
+    private GitHub gitHub;
+    private FileChannel cacheLockChannel;
+
+    public synchronized OkHttpClient httpClient() throws IOException {
+        if (httpClient == null) {
+            OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .addInterceptor(new GitHubRateLimiter())
+                .addNetworkInterceptor(new UpgradeMetrics.ApiCallCounter());
+            if (getParameters().getCacheDir().isPresent()) {
+                // The response cache does not support concurrent access from several processes
+                Path cacheDir = getParameters().getCacheDir().get().getAsFile().toPath();
+                cacheLockChannel = FileLockUtils.tryLockForBuild(cacheDir.resolveSibling(cacheDir.getFileName() + ".lock")).orElse(null);
+                if (cacheLockChannel != null) {
+                    builder.cache(new Cache(cacheDir.toFile(), CACHE_SIZE));
+                } else {
+                    LOGGER.info("GitHub response cache in use by another build, running without it");
+                }
+            }
+            httpClient = builder.build();
+        }
+        return httpClient;
+    }
+
+    public synchronized GitHub gitHub() throws IOException {
+        if (gitHub == null) {
+            GitHubBuilder builder = new GitHubBuilder()
+                .withConnector(new OkHttpGitHubConnector(httpClient()));
+            if (getParameters().getApiUrl().isPresent()) {
+                builder.withEndpoint(getParameters().getApiUrl().get());
+            }
+            token().ifPresent(builder::withOAuthToken);
+            gitHub = builder.build();
+        }
+        return gitHub;
+    }
+
+    public Optional<String> token() {
+        return Optional.ofNullable(System.getenv(GIT_TOKEN_ENV_VAR));
+    }
+
+    /**
+     * Returns the GitHub user with the given login, looked up once per build since the same reviewers and assignees are usually set on all projects.
+     */
+    public GHUser user(String login) throws IOException {
+        GHUser user = users.get(login);
+        if (user == null) {
+            user = gitHub().getUser(login);
+            users.put(login, user);
+        }
+        return user;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (httpClient != null) {
+            httpClient.dispatcher().executorService().shutdown();
+            httpClient.connectionPool().evictAll();
+            if (httpClient.cache() != null) {
+                httpClient.cache().close();
+            }
+        }
+        if (cacheLockChannel != null) {
+            cacheLockChannel.close();
+        }
+    }
+
+}
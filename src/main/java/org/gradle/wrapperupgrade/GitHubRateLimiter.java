@@ -0,0 +1,234 @@
+package org.gradle.wrapperupgrade;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Buffer;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Schedules the GitHub requests of all upgrade tasks according to the GitHub rate limits:
+ * <ul>
+ *     <li>the number of concurrent requests shrinks with the remaining primary rate limit budget, and requests wait for the
+ *     rate limit reset once the budget is exhausted, the REST, GraphQL and search budgets being tracked separately,</li>
+ *     <li>requests hitting a secondary rate limit are retried after the delay given by GitHub, or else after an exponential backoff with jitter,</li>
+ *     <li>REST writes and GraphQL mutations are spread over time, as recommended by GitHub to avoid secondary rate limits,
+ *     while GraphQL queries, although sent as POST requests, are not.</li>
+ * </ul>
+ */
+final class GitHubRateLimiter implements Interceptor {
+
+    private static final Logger LOGGER = Logging.getLogger(GitHubRateLimiter.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final int REQUESTS_PER_CONCURRENT_SLOT = 100;
+    private static final int MAX_RETRIES = 5;
+    private static final Duration MUTATION_SPACING = Duration.ofSeconds(1);
+    private static final Duration INITIAL_BACKOFF = Duration.ofSeconds(30);
+
+    private final Clock clock;
+    private final Sleeper sleeper;
+
+    private final Map<String, Budget> budgets = new HashMap<>();
+    private Instant nextMutation = Instant.EPOCH;
+
+    GitHubRateLimiter() {
+        this(Clock.systemUTC(), Thread::sleep);
+    }
+
+    GitHubRateLimiter(Clock clock, Sleeper sleeper) {
+        this.clock = clock;
+        this.sleeper = sleeper;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String resource = resource(request);
+        boolean mutation = isMutation(request);
+        for (int attempt = 0; ; attempt++) {
+            Budget budget = acquire(resource, mutation);
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } finally {
+                release(budget);
+            }
+            update(resource, response);
+            Duration delay = retryDelay(response, attempt);
+            if (delay == null || attempt == MAX_RETRIES) {
+                return response;
+            }
+            response.close();
+            if (!delay.isZero()) {
+                LOGGER.lifecycle(String.format("GitHub secondary rate limit reached, retrying %s %s in %s seconds", request.method(), request.url().encodedPath(), delay.getSeconds()));
+                sleep(delay);
+            }
+        }
+    }
+
+    private Budget acquire(String resource, boolean mutation) throws IOException {
+        while (true) {
+            Duration delay;
+            synchronized (this) {
+                Budget budget = budget(resource);
+                Instant now = clock.instant();
+                if (budget.remaining == 0 && now.isBefore(budget.reset)) {
+                    delay = Duration.between(now, budget.reset).plus(jitter(Duration.ofSeconds(1)));
+                    LOGGER.lifecycle(String.format("GitHub %s rate limit exhausted, waiting %s seconds for its reset", resource, delay.getSeconds()));
+                } else if (budget.requestsInFlight >= budget.allowedConcurrentRequests()) {
+                    delay = Duration.ofMillis(100);
+                } else if (mutation && now.isBefore(nextMutation)) {
+                    delay = Duration.between(now, nextMutation);
+                } else {
+                    if (mutation) {
+                        nextMutation = now.plus(MUTATION_SPACING);
+                    }
+                    if (budget.remaining > 0) {
+                        budget.remaining--;
+                    }
+                    budget.requestsInFlight++;
+                    return budget;
+                }
+            }
+            sleep(delay);
+        }
+    }
+
+    private synchronized void release(Budget budget) {
+        budget.requestsInFlight--;
+    }
+
+    private Budget budget(String resource) {
+        return budgets.computeIfAbsent(resource, r -> new Budget());
+    }
+
+    private synchronized void update(String requestResource, Response response) {
+        String remainingHeader = response.header("x-ratelimit-remaining");
+        String resetHeader = response.header("x-ratelimit-reset");
+        if (remainingHeader != null && resetHeader != null) {
+            String resource = response.header("x-ratelimit-resource");
+            Budget budget = budget(resource != null ? resource : requestResource);
+            try {
+                budget.remaining = Integer.parseInt(remainingHeader);
+                budget.reset = Instant.ofEpochSecond(Long.parseLong(resetHeader));
+            } catch (NumberFormatException e) {
+                // Keep the previous state
+            }
+        }
+    }
+
+    @Nullable
+    private Duration retryDelay(Response response, int attempt) {
+        if (response.code() != 403 && response.code() != 429) {
+            return null;
+        }
+        String retryAfter = response.header("retry-after");
+        if (retryAfter != null) {
+            try {
+                return Duration.ofSeconds(Long.parseLong(retryAfter)).plus(jitter(Duration.ofSeconds(1)));
+            } catch (NumberFormatException e) {
+                // Fall back to the other strategies
+            }
+        }
+        if ("0".equals(response.header("x-ratelimit-remaining"))) {
+            // Waited for in acquire()
+            return Duration.ZERO;
+        }
+        if (response.code() == 429 || isSecondaryRateLimit(response)) {
+            Duration backoff = INITIAL_BACKOFF.multipliedBy(1L << attempt);
+            return backoff.plus(jitter(backoff));
+        }
+        return null;
+    }
+
+    private static boolean isSecondaryRateLimit(Response response) {
+        try {
+            return response.peekBody(4096).string().toLowerCase().contains("secondary rate limit");
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The rate limit resource a request counts against, as named by GitHub in the `x-ratelimit-resource` header.
+     */
+    private static String resource(Request request) {
+        String path = request.url().encodedPath();
+        if (isGraphQl(request)) {
+            return "graphql";
+        } else if (path.contains("/search/")) {
+            return "search";
+        }
+        return "core";
+    }
+
+    /**
+     * GraphQL queries are POST requests too, hence GraphQL requests are told apart by their operation.
+     */
+    private static boolean isMutation(Request request) {
+        if ("GET".equals(request.method()) || "HEAD".equals(request.method())) {
+            return false;
+        }
+        if (!isGraphQl(request) || request.body() == null) {
+            return true;
+        }
+        try {
+            Buffer body = new Buffer();
+            request.body().writeTo(body);
+            String query = MAPPER.readTree(body.inputStream()).path("query").asText("").trim();
+            return query.isEmpty() || query.startsWith("mutation");
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private static boolean isGraphQl(Request request) {
+        return "POST".equals(request.method()) && request.url().encodedPath().endsWith("/graphql");
+    }
+
+    private static Duration jitter(Duration bound) {
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(bound.toMillis() + 1));
+    }
+
+    private void sleep(Duration delay) throws IOException {
+        try {
+            sleeper.sleep(delay.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the GitHub rate limit");
+        }
+    }
+
+    private static final class Budget {
+
+        private int requestsInFlight;
+        private int remaining = -1;
+        private Instant reset = Instant.EPOCH;
+
+        private int allowedConcurrentRequests() {
+            return remaining < 0 ? Integer.MAX_VALUE : Math.max(1, remaining / REQUESTS_PER_CONCURRENT_SLOT);
+        }
+
+    }
+
+    interface Sleeper {
+
+        void sleep(long millis) throws InterruptedException;
+
+    }
+
+}
@@ -0,0 +1,42 @@
+package org.gradle.wrapperupgrade;
+
+import org.kohsuke.github.GitHub;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Access to the GitHub repository of one upgrade. Failures to decorate or close pull requests are logged as warnings
+ * rather than failing the upgrade, since the pull request has been created by then.
+ */
+interface GitHubRepositoryClient {
+
+    /**
+     * Reads through GraphQL when authenticated, since a single query then answers all the reads of an upgrade,
+     * and through the REST API otherwise, since GraphQL requires authentication.
+     */
+    static GitHubRepositoryClient create(GitHubClientService gitHubClientService, GitHub gitHub, String project, String repository,
+                                         String prBranch, String branchPrefix, List<String> labels, List<String> users) throws IOException {
+        Optional<String> repositoryName = UpgradeWrapperWorkAction.gitHubRepositoryName(repository);
+        Optional<String> token = gitHubClientService.token();
+        if (token.isPresent() && repositoryName.isPresent()) {
+            return new GraphQlGitHubRepositoryClient(gitHub, gitHubClientService.httpClient(), token.get(), project, repositoryName.get(), prBranch, branchPrefix, labels, users);
+        }
+        return new RestGitHubRepositoryClient(gitHubClientService, gitHub, project, repositoryName.orElse(repository), prBranch, branchPrefix);
+    }
+
+    boolean branchExists() throws IOException;
+
+    boolean closedPullRequestExists() throws IOException;
+
+    Iterable<PullRequestInfo> openPullRequests() throws IOException;
+
+    PullRequestInfo createPullRequest(String title, String baseBranch, String body) throws IOException;
+
+    void decoratePullRequest(PullRequestInfo pullRequest, List<String> labels, List<String> reviewers, List<String> assignees);
+
+    void closePullRequests(Collection<PullRequestInfo> pullRequests);
+
+}
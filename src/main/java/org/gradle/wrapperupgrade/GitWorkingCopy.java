@@ -0,0 +1,42 @@
+package org.gradle.wrapperupgrade;
+
+import org.gradle.process.ExecOperations;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The Git operations run on a project once it is checked out, either through the Git CLI or an embedded Git engine.
+ */
+interface GitWorkingCopy extends AutoCloseable {
+
+    static GitWorkingCopy create(ExecOperations execOperations, Path gitCheckoutDir, boolean embedded) throws IOException {
+        return embedded ? new EmbeddedGitWorkingCopy(gitCheckoutDir) : new CliGitWorkingCopy(execOperations, gitCheckoutDir);
+    }
+
+    void disableCommitSigning() throws IOException;
+
+    /**
+     * Returns whether any tracked file of the working tree differs from the index.
+     */
+    boolean hasChanges() throws IOException;
+
+    void add(List<Path> paths) throws IOException;
+
+    /**
+     * Creates the given branch at the current commit, or resets it if it exists, and switches to it.
+     */
+    void checkoutBranch(String branch) throws IOException;
+
+    /**
+     * Commits the staged changes with a sign-off, applying the given `git commit` arguments.
+     */
+    void commit(String message, List<String> extraArgs) throws IOException;
+
+    void push(String branch) throws IOException;
+
+    @Override
+    void close();
+
+}
@@ -6,16 +6,25 @@ import org.gradle.process.ExecOperations;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Properties;
 import java.util.Scanner;
+import java.util.Set;
 
 import static org.gradle.wrapperupgrade.BuildToolStrategy.extractBuildToolVersion;
 
 public final class GradleBuildToolStrategy implements BuildToolStrategy {
 
-    private final GradleMetadataFetcher gradleMetadataFetcher = new GradleMetadataFetcher();
+    private static final String WRAPPER_PROPERTIES = "gradle/wrapper/gradle-wrapper.properties";
+    private static final String VERSION_REG_EXP = "distributions(?:-snapshots)?/gradle-(.*)-(bin|all).zip";
+    private static final Set<String> GENERATED_PROPERTIES = new HashSet<>(Arrays.asList("distributionUrl", "distributionSha256Sum"));
 
     @Override
     public String buildToolName() {
@@ -23,29 +32,47 @@ public final class GradleBuildToolStrategy implements BuildToolStrategy {
     }
 
     @Override
-    public VersionInfo lookupLatestVersion(boolean allowPreRelease) throws IOException {
-        JsonNode latestVersion = gradleMetadataFetcher.fetchLatestVersion(allowPreRelease)
+    public VersionInfo lookupLatestVersion(HttpTransport transport, String metadataBaseUrl, boolean allowPreRelease) throws IOException {
+        JsonNode latestVersion = new GradleMetadataFetcher(transport, metadataBaseUrl).fetchLatestVersion(allowPreRelease)
             .orElseThrow(() -> new IllegalStateException("Could not determine latest Gradle version"));
 
         JsonNode checksumUrl = latestVersion.get("checksumUrl");
         if (checksumUrl != null) {
-            URL url = new URL(checksumUrl.asText());
-            String checksum = new Scanner(url.openStream()).useDelimiter("\\A").next();
+            String checksum = fetchChecksum(transport, checksumUrl.asText());
             return new VersionInfo(latestVersion.get("version").asText(), checksum);
         } else {
             return new VersionInfo(latestVersion.get("version").asText(), null);
         }
     }
 
+    @Override
+    public String defaultMetadataBaseUrl() {
+        return GradleMetadataFetcher.DEFAULT_BASE_URL;
+    }
+
     @Override
     public VersionInfo extractCurrentVersion(Path rootProjectDir) throws IOException {
         return extractBuildToolVersion(rootProjectDir,
-            "gradle/wrapper/gradle-wrapper.properties",
+            WRAPPER_PROPERTIES,
+            "distributionUrl", "distributionSha256Sum",
+            VERSION_REG_EXP
+        );
+    }
+
+    @Override
+    public VersionInfo extractCurrentVersion(Properties wrapperProperties) {
+        return extractBuildToolVersion(wrapperProperties,
+            WRAPPER_PROPERTIES,
             "distributionUrl", "distributionSha256Sum",
-            "distributions(?:-snapshots)?/gradle-(.*)-(bin|all).zip"
+            VERSION_REG_EXP
         );
     }
 
+    @Override
+    public String wrapperPropertiesFile() {
+        return WRAPPER_PROPERTIES;
+    }
+
     @Override
     public void runWrapper(ExecOperations execOperations, Path rootProjectDir, VersionInfo version) {
         if (version.checksum.isPresent()) {
@@ -56,6 +83,36 @@ public final class GradleBuildToolStrategy implements BuildToolStrategy {
         }
     }
 
+    @Override
+    public void writeWrapperFiles(ExecOperations execOperations, HttpTransport transport, WrapperTemplateCache templateCache, Path rootProjectDir, VersionInfo version) throws IOException {
+        Path templateDir = templateCache.templateFor(execOperations, this, version.version, rootProjectDir, version,
+            Collections.singletonMap("settings.gradle", "rootProject.name = 'wrapper-template'\n"));
+        WrapperTemplateCache.copyWrapperFile(templateDir, rootProjectDir, "gradlew");
+        WrapperTemplateCache.copyWrapperFile(templateDir, rootProjectDir, "gradlew.bat");
+        WrapperTemplateCache.copyWrapperFile(templateDir, rootProjectDir, "gradle/wrapper/gradle-wrapper.jar");
+
+        Path propertiesFile = rootProjectDir.resolve(WRAPPER_PROPERTIES);
+        List<String> templateLines = WrapperProperties.readLines(templateDir.resolve(WRAPPER_PROPERTIES));
+        Map<String, String> existingValues = WrapperProperties.values(WrapperProperties.readLines(propertiesFile));
+        String generatedUrl = WrapperProperties.values(templateLines).get("distributionUrl");
+        String distributionUrl = WrapperProperties.distributionUrl(generatedUrl, existingValues.get("distributionUrl"));
+
+        // The wrapper generates a `bin` distribution unless configured otherwise by the build, which is not evaluated here
+        String checksum = version.checksum.orElse(null);
+        boolean allDistribution = Optional.ofNullable(existingValues.get("distributionUrl")).map(url -> url.endsWith("-all.zip")).orElse(false);
+        if (allDistribution) {
+            distributionUrl = distributionUrl.replaceAll("-bin\\.zip$", "-all.zip");
+            if (checksum != null) {
+                checksum = fetchChecksum(transport, generatedUrl.replace("\\:", ":").replaceAll("-bin\\.zip$", "-all.zip") + ".sha256");
+            }
+        }
+
+        Map<String, String> overrides = new HashMap<>();
+        overrides.put("distributionUrl", distributionUrl);
+        overrides.put("distributionSha256Sum", checksum);
+        WrapperProperties.write(propertiesFile, WrapperProperties.merge(templateLines, existingValues, GENERATED_PROPERTIES, overrides));
+    }
+
     @Override
     public List<Path> wrapperFiles(Path rootProjectDir) {
         List<Path> paths = new LinkedList<>();
@@ -65,9 +122,23 @@ public final class GradleBuildToolStrategy implements BuildToolStrategy {
         return paths;
     }
 
+    @Override
+    public List<String> sparseCheckoutDirs() {
+        List<String> dirs = new LinkedList<>();
+        dirs.add("gradle");
+        dirs.add("buildSrc");
+        return dirs;
+    }
+
     @Override
     public String releaseNotesLink(String buildToolVersion) {
         return "https://docs.gradle.org/$VERSION/release-notes.html".replace("$VERSION", buildToolVersion);
     }
 
+    private static String fetchChecksum(HttpTransport transport, String checksumUrl) throws IOException {
+        try (Scanner scanner = new Scanner(transport.open(new URL(checksumUrl)), "UTF-8")) {
+            return scanner.useDelimiter("\\A").next();
+        }
+    }
+
 }
@@ -0,0 +1,132 @@
+package org.gradle.wrapperupgrade;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.gradle.wrapperupgrade.FileLockUtils.withFileLock;
+
+/**
+ * Installs Gradle distributions in a Gradle user home with the layout of the Gradle Wrapper, so that the wrapper
+ * finds them installed: `wrapper/dists/<distribution name>/<hash of the distribution URL>/`, next to the zip and its `.ok` marker.
+ */
+final class GradleDistributionInstaller {
+
+    /**
+     * Returns the directory the Gradle Wrapper installs the distribution of the given URL in.
+     */
+    static Path distributionDir(Path gradleUserHome, String distributionUrl) {
+        String zipName = distributionUrl.substring(distributionUrl.lastIndexOf('/') + 1);
+        String distName = zipName.endsWith(".zip") ? zipName.substring(0, zipName.length() - ".zip".length()) : zipName;
+        return gradleUserHome.resolve("wrapper").resolve("dists").resolve(distName).resolve(urlHash(distributionUrl));
+    }
+
+    /**
+     * Downloads and unpacks the distribution of the given URL unless already installed, holding the same lock as the Gradle Wrapper.
+     * Returns whether the distribution has been installed by this call.
+     */
+    static boolean install(HttpTransport transport, Path gradleUserHome, String distributionUrl, @Nullable String sha256Sum) throws IOException {
+        Path distDir = distributionDir(gradleUserHome, distributionUrl);
+        Path zipFile = distDir.resolve(distributionUrl.substring(distributionUrl.lastIndexOf('/') + 1));
+        Path markerFile = distDir.resolve(zipFile.getFileName() + ".ok");
+        if (Files.exists(markerFile)) {
+            return false;
+        }
+        boolean[] installed = {false};
+        try {
+            withFileLock(distDir.resolve(zipFile.getFileName() + ".lck"), () -> {
+                if (Files.exists(markerFile)) {
+                    return;
+                }
+                Path partFile = distDir.resolve(zipFile.getFileName() + ".part");
+                String checksum = download(transport, distributionUrl, partFile);
+                if (sha256Sum != null && !sha256Sum.equalsIgnoreCase(checksum)) {
+                    Files.delete(partFile);
+                    throw new IOException(String.format("Checksum of %s is %s instead of %s", distributionUrl, checksum, sha256Sum));
+                }
+                Files.move(partFile, zipFile, StandardCopyOption.REPLACE_EXISTING);
+                unzip(zipFile, distDir);
+                Files.createFile(markerFile);
+                installed[0] = true;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return installed[0];
+    }
+
+    private static String download(HttpTransport transport, String distributionUrl, Path target) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream is = new DigestInputStream(transport.open(new URL(distributionUrl)), digest)) {
+            Files.copy(is, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return String.format("%064x", new BigInteger(1, digest.digest()));
+    }
+
+    private static void unzip(Path zipFile, Path targetDir) throws IOException {
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(zipFile))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                Path target = targetDir.resolve(entry.getName()).normalize();
+                if (!target.startsWith(targetDir)) {
+                    throw new IOException(String.format("Entry '%s' of %s is outside of the distribution", entry.getName(), zipFile));
+                }
+                if (entry.isDirectory()) {
+                    Files.createDirectories(target);
+                    continue;
+                }
+                Files.createDirectories(target.getParent());
+                try (OutputStream os = Files.newOutputStream(target)) {
+                    byte[] buffer = new byte[8192];
+                    for (int read = zip.read(buffer); read >= 0; read = zip.read(buffer)) {
+                        os.write(buffer, 0, read);
+                    }
+                }
+                // As the Gradle Wrapper does when installing a distribution
+                if (target.getParent().getFileName().toString().equals("bin")) {
+                    target.toFile().setExecutable(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * The hash of the Gradle Wrapper: the MD5 of the URL without user info, in base 36.
+     */
+    static String urlHash(String distributionUrl) {
+        try {
+            URI uri = new URI(distributionUrl);
+            String safeUri = new URI(uri.getScheme(), null, uri.getHost(), uri.getPort(), uri.getPath(), uri.getQuery(), uri.getFragment()).toASCIIString();
+            byte[] digest = MessageDigest.getInstance("MD5").digest(safeUri.getBytes(StandardCharsets.UTF_8));
+            return new BigInteger(1, digest).toString(36);
+        } catch (URISyntaxException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private GradleDistributionInstaller() {
+    }
+
+}
@@ -1,43 +1,113 @@
 package org.gradle.wrapperupgrade;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.gradle.util.internal.VersionNumber;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Comparator;
 import java.util.Optional;
-import java.util.stream.StreamSupport;
 
 public class GradleMetadataFetcher {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static final String DEFAULT_BASE_URL = "https://services.gradle.org";
+
+    private final HttpTransport transport;
     private final URL gradleAllVersionsMetadata;
     private final URL gradleCurrentVersionMetadata;
 
-    GradleMetadataFetcher(URL gradleAllVersionsMetadata, URL gradleCurrentVersionMetadata) {
+    GradleMetadataFetcher(HttpTransport transport, URL gradleAllVersionsMetadata, URL gradleCurrentVersionMetadata) {
+        this.transport = transport;
         this.gradleAllVersionsMetadata = gradleAllVersionsMetadata;
         this.gradleCurrentVersionMetadata = gradleCurrentVersionMetadata;
     }
 
-    GradleMetadataFetcher() {
+    GradleMetadataFetcher(URL gradleAllVersionsMetadata, URL gradleCurrentVersionMetadata) {
+        this(HttpTransport.URL_CONNECTION, gradleAllVersionsMetadata, gradleCurrentVersionMetadata);
+    }
+
+    GradleMetadataFetcher(HttpTransport transport, String baseUrl) {
         try {
-            this.gradleAllVersionsMetadata = new URL("https://services.gradle.org/versions/all");
-            this.gradleCurrentVersionMetadata = new URL("https://services.gradle.org/versions/current");
+            this.transport = transport;
+            this.gradleAllVersionsMetadata = new URL(baseUrl + "/versions/all");
+            this.gradleCurrentVersionMetadata = new URL(baseUrl + "/versions/current");
         } catch (MalformedURLException e) {
             throw new RuntimeException(e);
         }
     }
 
     Optional<JsonNode> fetchLatestVersion(boolean allowPreRelease) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
         if (allowPreRelease) {
-            return StreamSupport.stream(mapper.readTree(gradleAllVersionsMetadata).spliterator(), false)
-                .max(Comparator.comparing(n -> VersionNumber.parse(n.path("version").asText())))
-                .flatMap(n -> n.path("version").isMissingNode() ? Optional.empty() : Optional.of(n));
+            try (InputStream is = transport.open(gradleAllVersionsMetadata);
+                 JsonParser parser = MAPPER.getFactory().createParser(is)) {
+                return findLatestVersion(parser);
+            }
         } else {
-            JsonNode gradleMetadata = mapper.readTree(gradleCurrentVersionMetadata);
-            return gradleMetadata.path("version").isMissingNode() ? Optional.empty() : Optional.of(gradleMetadata);
+            try (InputStream is = transport.open(gradleCurrentVersionMetadata)) {
+                JsonNode gradleMetadata = MAPPER.readTree(is);
+                return gradleMetadata.path("version").isMissingNode() ? Optional.empty() : Optional.of(gradleMetadata);
+            }
+        }
+    }
+
+    /**
+     * Streams through the versions in a single pass, keeping only the latest version seen so far,
+     * and skipping the snapshots, nightlies and broken versions.
+     */
+    static Optional<JsonNode> findLatestVersion(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IOException("Unexpected Gradle versions metadata, expected an array of versions");
+        }
+        String latestVersion = null;
+        VersionNumber latestVersionNumber = null;
+        String latestChecksumUrl = null;
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String version = null;
+            String checksumUrl = null;
+            boolean skipped = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "version":
+                        version = parser.getValueAsString();
+                        break;
+                    case "checksumUrl":
+                        checksumUrl = parser.getValueAsString();
+                        break;
+                    case "snapshot":
+                    case "nightly":
+                    case "releaseNightly":
+                    case "broken":
+                        skipped |= value == JsonToken.VALUE_TRUE;
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            if (skipped || version == null) {
+                continue;
+            }
+            VersionNumber versionNumber = VersionNumber.parse(version);
+            if (latestVersionNumber == null || versionNumber.compareTo(latestVersionNumber) > 0) {
+                latestVersion = version;
+                latestVersionNumber = versionNumber;
+                latestChecksumUrl = checksumUrl;
+            }
+        }
+        if (latestVersion == null) {
+            return Optional.empty();
+        }
+        ObjectNode latest = MAPPER.createObjectNode().put("version", latestVersion);
+        if (latestChecksumUrl != null) {
+            latest.put("checksumUrl", latestChecksumUrl);
         }
+        return Optional.of(latest);
     }
 }
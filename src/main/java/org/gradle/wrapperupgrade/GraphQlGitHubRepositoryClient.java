@@ -0,0 +1,343 @@
+package org.gradle.wrapperupgrade;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.kohsuke.github.GHIssueState;
+import org.kohsuke.github.GitHub;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Reads the branch, the pull requests and the users of an upgrade in a single GraphQL query,
+ * and decorates or closes pull requests in a single mutation each.
+ */
+final class GraphQlGitHubRepositoryClient implements GitHubRepositoryClient {
+
+    private static final Logger LOGGER = Logging.getLogger(GraphQlGitHubRepositoryClient.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    private static final String PULL_REQUEST_FIELDS = "id number headRefName state url";
+    private static final String HEAD_OWNER_FIELD = "headRepositoryOwner { login }";
+    private static final String OPEN_PULL_REQUESTS_FIELDS = "nodes { " + PULL_REQUEST_FIELDS + " " + HEAD_OWNER_FIELD + " } pageInfo { hasNextPage endCursor }";
+    private static final String OPEN_PULL_REQUESTS_PAGE_QUERY = "query($owner: String!, $name: String!, $cursor: String!) {" +
+        " repository(owner: $owner, name: $name) { open: pullRequests(states: [OPEN], first: 100, after: $cursor) { " + OPEN_PULL_REQUESTS_FIELDS + " } } }";
+
+    private final GitHub gitHub;
+    private final OkHttpClient httpClient;
+    private final String token;
+    private final String project;
+    private final String owner;
+    private final String name;
+    private final String prBranch;
+    private final String branchPrefix;
+    private final List<String> labels;
+    private final List<String> users;
+
+    private RepositoryState state;
+
+    GraphQlGitHubRepositoryClient(GitHub gitHub, OkHttpClient httpClient, String token, String project, String repositoryName,
+                                  String prBranch, String branchPrefix, List<String> labels, List<String> users) {
+        this.gitHub = gitHub;
+        this.httpClient = httpClient;
+        this.token = token;
+        this.project = project;
+        this.owner = repositoryName.substring(0, repositoryName.indexOf('/'));
+        this.name = repositoryName.substring(repositoryName.indexOf('/') + 1);
+        this.prBranch = prBranch;
+        this.branchPrefix = branchPrefix;
+        this.labels = labels;
+        this.users = users;
+    }
+
+    @Override
+    public boolean branchExists() throws IOException {
+        return state().branchExists;
+    }
+
+    @Override
+    public boolean closedPullRequestExists() throws IOException {
+        return state().closedPullRequestExists;
+    }
+
+    @Override
+    public Iterable<PullRequestInfo> openPullRequests() throws IOException {
+        return state().openPullRequests;
+    }
+
+    @Override
+    public PullRequestInfo createPullRequest(String title, String baseBranch, String body) throws IOException {
+        ObjectNode input = MAPPER.createObjectNode()
+            .put("repositoryId", state().repositoryId)
+            .put("baseRefName", baseBranch)
+            .put("headRefName", prBranch)
+            .put("title", title)
+            .put("body", body);
+        Map<String, Object> variables = new LinkedHashMap<>();
+        variables.put("input", input);
+        JsonNode response = execute("mutation($input: CreatePullRequestInput!) { createPullRequest(input: $input) { pullRequest { " + PULL_REQUEST_FIELDS + " } } }", variables);
+        JsonNode errors = response.path("errors");
+        if (errors.size() > 0) {
+            throw new IOException(errorMessage(errors));
+        }
+        return toInfo(response.path("data").path("createPullRequest").path("pullRequest"));
+    }
+
+    @Override
+    public void decoratePullRequest(PullRequestInfo pullRequest, List<String> labels, List<String> reviewers, List<String> assignees) {
+        List<String> labelIds = new ArrayList<>();
+        List<String> missingLabels = new ArrayList<>();
+        for (String label : labels) {
+            String labelId = state.labelIds.get(label);
+            if (labelId != null) {
+                labelIds.add(labelId);
+            } else {
+                missingLabels.add(label);
+            }
+        }
+        List<String> reviewerIds = userIds(reviewers);
+        List<String> assigneeIds = userIds(assignees);
+
+        // GraphQL rejects declared but unused variables, hence only the needed ones are declared
+        StringBuilder declarations = new StringBuilder("$id: ID!");
+        StringBuilder fields = new StringBuilder();
+        Map<String, Object> variables = new LinkedHashMap<>();
+        variables.put("id", pullRequest.id);
+        Map<String, String> failureMessages = new LinkedHashMap<>();
+        if (!labelIds.isEmpty()) {
+            declarations.append(", $labelIds: [ID!]!");
+            fields.append(" labels: addLabelsToLabelable(input: {labelableId: $id, labelIds: $labelIds}) { clientMutationId }");
+            variables.put("labelIds", labelIds);
+            failureMessages.put("labels", "Error adding labels on project '%s': %s");
+        }
+        if (!reviewerIds.isEmpty()) {
+            declarations.append(", $reviewerIds: [ID!]!");
+            fields.append(" reviewers: requestReviews(input: {pullRequestId: $id, userIds: $reviewerIds, union: true}) { clientMutationId }");
+            variables.put("reviewerIds", reviewerIds);
+            failureMessages.put("reviewers", "Error requesting reviewers on project '%s': %s");
+        }
+        if (!assigneeIds.isEmpty()) {
+            declarations.append(", $assigneeIds: [ID!]!");
+            fields.append(" assignees: addAssigneesToAssignable(input: {assignableId: $id, assigneeIds: $assigneeIds}) { clientMutationId }");
+            variables.put("assigneeIds", assigneeIds);
+            failureMessages.put("assignees", "Error adding assignees on project '%s': %s");
+        }
+        if (!failureMessages.isEmpty()) {
+            executeMutation("mutation(" + declarations + ") {" + fields + " }", variables, failureMessages);
+        }
+        if (!missingLabels.isEmpty()) {
+            // Labels that do not exist yet can only be created on the fly through the REST API
+            try {
+                gitHub.getRepository(owner + "/" + name).getIssue(pullRequest.number).addLabels(missingLabels.toArray(new String[0]));
+            } catch (IOException e) {
+                LOGGER.warn(String.format("Error adding labels on project '%s': %s", project, e.getMessage() != null ? e.getMessage() : "Unable to add labels"));
+            }
+        }
+    }
+
+    @Override
+    public void closePullRequests(Collection<PullRequestInfo> pullRequests) {
+        if (pullRequests.isEmpty()) {
+            return;
+        }
+        StringBuilder mutation = new StringBuilder("mutation(");
+        StringBuilder fields = new StringBuilder();
+        Map<String, Object> variables = new LinkedHashMap<>();
+        Map<String, String> failureMessages = new LinkedHashMap<>();
+        int i = 0;
+        for (PullRequestInfo pullRequest : pullRequests) {
+            mutation.append(i > 0 ? ", " : "").append("$pr").append(i).append(": ID!");
+            fields.append(" close").append(i).append(": closePullRequest(input: {pullRequestId: $pr").append(i).append("}) { clientMutationId }");
+            variables.put("pr" + i, pullRequest.id);
+            failureMessages.put("close" + i, "Error closing pull request #" + pullRequest.number + " on project '%s': %s");
+            i++;
+        }
+        mutation.append(") {").append(fields).append(" }");
+        executeMutation(mutation.toString(), variables, failureMessages);
+    }
+
+    private RepositoryState state() throws IOException {
+        if (state == null) {
+            state = readState();
+        }
+        return state;
+    }
+
+    private RepositoryState readState() throws IOException {
+        Map<String, Object> variables = new LinkedHashMap<>();
+        variables.put("owner", owner);
+        variables.put("name", name);
+        variables.put("branch", prBranch);
+        variables.put("qualifiedBranch", "refs/heads/" + prBranch);
+        StringBuilder declarations = new StringBuilder("$owner: String!, $name: String!, $branch: String!, $qualifiedBranch: String!");
+        StringBuilder labelFields = new StringBuilder();
+        for (int i = 0; i < labels.size(); i++) {
+            declarations.append(", $label").append(i).append(": String!");
+            labelFields.append(" label").append(i).append(": label(name: $label").append(i).append(") { id }");
+            variables.put("label" + i, labels.get(i));
+        }
+        StringBuilder userFields = new StringBuilder();
+        for (int i = 0; i < users.size(); i++) {
+            declarations.append(", $user").append(i).append(": String!");
+            userFields.append(" user").append(i).append(": user(login: $user").append(i).append(") { id }");
+            variables.put("user" + i, users.get(i));
+        }
+        String query = "query(" + declarations + ") {" +
+            " repository(owner: $owner, name: $name) {" +
+            " id" +
+            " ref(qualifiedName: $qualifiedBranch) { id }" +
+            " closed: pullRequests(headRefName: $branch, states: [CLOSED, MERGED], first: 100) { nodes { " + HEAD_OWNER_FIELD + " } }" +
+            " open: pullRequests(states: [OPEN], first: 100) { " + OPEN_PULL_REQUESTS_FIELDS + " }" +
+            labelFields +
+            " }" +
+            userFields +
+            " }";
+
+        JsonNode response = execute(query, variables);
+        JsonNode repository = response.path("data").path("repository");
+        if (repository.isMissingNode() || repository.isNull()) {
+            throw new IOException(errorMessage(response.path("errors")));
+        }
+
+        RepositoryState state = new RepositoryState();
+        state.repositoryId = repository.path("id").asText();
+        state.branchExists = !repository.path("ref").isNull();
+        for (JsonNode pr : repository.path("closed").path("nodes")) {
+            state.closedPullRequestExists |= isFromRepository(pr);
+        }
+        for (int i = 0; i < labels.size(); i++) {
+            JsonNode label = repository.path("label" + i);
+            if (label.isObject()) {
+                state.labelIds.put(labels.get(i), label.path("id").asText());
+            }
+        }
+        for (int i = 0; i < users.size(); i++) {
+            JsonNode user = response.path("data").path("user" + i);
+            if (user.isObject()) {
+                state.userIds.put(users.get(i), user.path("id").asText());
+            }
+        }
+
+        // Open pull requests are paged through only in the rare case of more than 100 of them, with a query of the next page only
+        JsonNode open = repository.path("open");
+        while (true) {
+            open.path("nodes").forEach(pr -> {
+                if (pr.path("headRefName").asText().startsWith(branchPrefix) && isFromRepository(pr)) {
+                    state.openPullRequests.add(toInfo(pr));
+                }
+            });
+            if (!open.path("pageInfo").path("hasNextPage").asBoolean()) {
+                break;
+            }
+            Map<String, Object> pageVariables = new LinkedHashMap<>();
+            pageVariables.put("owner", owner);
+            pageVariables.put("name", name);
+            pageVariables.put("cursor", open.path("pageInfo").path("endCursor").asText());
+            JsonNode page = execute(OPEN_PULL_REQUESTS_PAGE_QUERY, pageVariables);
+            JsonNode pageRepository = page.path("data").path("repository");
+            if (pageRepository.isMissingNode() || pageRepository.isNull()) {
+                throw new IOException(errorMessage(page.path("errors")));
+            }
+            open = pageRepository.path("open");
+        }
+        return state;
+    }
+
+    /**
+     * Pull requests from forks can have the same branch name as the upgrade, hence only the pull requests from the repository itself are considered,
+     * like the REST client does with its `owner:branch` head filter.
+     */
+    private boolean isFromRepository(JsonNode pr) {
+        return owner.equalsIgnoreCase(pr.path("headRepositoryOwner").path("login").asText(null));
+    }
+
+    private List<String> userIds(List<String> logins) {
+        List<String> ids = new ArrayList<>();
+        for (String login : logins) {
+            Optional<String> id = Optional.ofNullable(state.userIds.get(login));
+            if (id.isPresent()) {
+                ids.add(id.get());
+            } else {
+                LOGGER.warn(String.format("Error fetching GitHub user '%s'", login));
+            }
+        }
+        return ids;
+    }
+
+    private void executeMutation(String mutation, Map<String, Object> variables, Map<String, String> failureMessages) {
+        try {
+            JsonNode errors = execute(mutation, variables).path("errors");
+            for (JsonNode error : errors) {
+                String field = error.path("path").path(0).asText();
+                String failureMessage = failureMessages.getOrDefault(field, "Error updating pull requests on project '%s': %s");
+                LOGGER.warn(String.format(failureMessage, project, error.path("message").asText()));
+            }
+        } catch (IOException e) {
+            failureMessages.values().forEach(failureMessage -> LOGGER.warn(String.format(failureMessage, project, e.getMessage())));
+        }
+    }
+
+    private JsonNode execute(String query, Map<String, Object> variables) throws IOException {
+        ObjectNode request = MAPPER.createObjectNode();
+        request.put("query", query);
+        request.set("variables", MAPPER.valueToTree(variables));
+
+        Request httpRequest = new Request.Builder()
+            .url(graphQlUrl(gitHub.getApiUrl()))
+            .header("Authorization", "bearer " + token)
+            .post(RequestBody.create(MAPPER.writeValueAsBytes(request), JSON))
+            .build();
+        try (Response response = httpClient.newCall(httpRequest).execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException(String.format("GitHub GraphQL request failed with status %s %s", response.code(), response.message()));
+            }
+            return MAPPER.readTree(response.body().byteStream());
+        }
+    }
+
+    /**
+     * The GraphQL endpoint is `/graphql` on github.com and `/api/graphql` on GitHub Enterprise Server, next to the `/api/v3` REST endpoint.
+     */
+    static String graphQlUrl(String apiUrl) {
+        String url = apiUrl.endsWith("/") ? apiUrl.substring(0, apiUrl.length() - 1) : apiUrl;
+        return (url.endsWith("/v3") ? url.substring(0, url.length() - 3) : url) + "/graphql";
+    }
+
+    private static PullRequestInfo toInfo(JsonNode pr) {
+        GHIssueState state = "OPEN".equals(pr.path("state").asText()) ? GHIssueState.OPEN : GHIssueState.CLOSED;
+        return new PullRequestInfo(pr.path("id").asText(), pr.path("number").asInt(), pr.path("headRefName").asText(), state, pr.path("url").asText());
+    }
+
+    private static String errorMessage(JsonNode errors) {
+        List<String> messages = new ArrayList<>();
+        errors.forEach(error -> messages.add(error.path("message").asText()));
+        return messages.isEmpty() ? "Unexpected GitHub GraphQL response" : String.join(", ", messages);
+    }
+
+    private static final class RepositoryState {
+
+        private String repositoryId;
+        private boolean branchExists;
+        private boolean closedPullRequestExists;
+        private final List<PullRequestInfo> openPullRequests = new ArrayList<>();
+        private final Map<String, String> labelIds = new LinkedHashMap<>();
+        private final Map<String, String> userIds = new LinkedHashMap<>();
+
+    }
+
+}
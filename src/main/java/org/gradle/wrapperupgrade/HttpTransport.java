@@ -0,0 +1,20 @@
+package org.gradle.wrapperupgrade;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+/**
+ * Downloads the version metadata and checksums of the build tools.
+ */
+@FunctionalInterface
+public interface HttpTransport {
+
+    HttpTransport URL_CONNECTION = URL::openStream;
+
+    /**
+     * Opens the content of the given URL, to be closed by the caller.
+     */
+    InputStream open(URL url) throws IOException;
+
+}
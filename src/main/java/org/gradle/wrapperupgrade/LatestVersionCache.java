@@ -0,0 +1,82 @@
+package org.gradle.wrapperupgrade;
+
+import org.gradle.wrapperupgrade.BuildToolStrategy.VersionInfo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Properties;
+
+final class LatestVersionCache {
+
+    private static final String VERSION_KEY = "version";
+    private static final String CHECKSUM_KEY = "checksum";
+    private static final String TIMESTAMP_KEY = "timestamp";
+
+    private final Path cacheDir;
+    private final Duration ttl;
+    private final Clock clock;
+
+    LatestVersionCache(Path cacheDir, Duration ttl) {
+        this(cacheDir, ttl, Clock.systemUTC());
+    }
+
+    LatestVersionCache(Path cacheDir, Duration ttl, Clock clock) {
+        this.cacheDir = cacheDir;
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    Optional<VersionInfo> read(String key) {
+        Path cacheFile = cacheFile(key);
+        if (!Files.isRegularFile(cacheFile)) {
+            return Optional.empty();
+        }
+        Properties props = new Properties();
+        try (InputStream is = Files.newInputStream(cacheFile)) {
+            props.load(is);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+        String version = props.getProperty(VERSION_KEY);
+        String timestamp = props.getProperty(TIMESTAMP_KEY);
+        if (version == null || timestamp == null || isExpired(timestamp)) {
+            return Optional.empty();
+        }
+        return Optional.of(new VersionInfo(version, props.getProperty(CHECKSUM_KEY)));
+    }
+
+    void write(String key, VersionInfo versionInfo) throws IOException {
+        Properties props = new Properties();
+        props.setProperty(VERSION_KEY, versionInfo.version);
+        versionInfo.checksum.ifPresent(checksum -> props.setProperty(CHECKSUM_KEY, checksum));
+        props.setProperty(TIMESTAMP_KEY, String.valueOf(clock.millis()));
+
+        Files.createDirectories(cacheDir);
+        Path tmpFile = Files.createTempFile(cacheDir, key, ".tmp");
+        try (OutputStream os = Files.newOutputStream(tmpFile)) {
+            props.store(os, null);
+        }
+        Files.move(tmpFile, cacheFile(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private boolean isExpired(String timestamp) {
+        try {
+            return Instant.ofEpochMilli(Long.parseLong(timestamp)).plus(ttl).isBefore(clock.instant());
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private Path cacheFile(String key) {
+        return cacheDir.resolve(key + ".properties");
+    }
+
+}
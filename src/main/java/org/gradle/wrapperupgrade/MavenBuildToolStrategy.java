@@ -5,41 +5,100 @@ import org.gradle.util.internal.VersionNumber;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
 
 import static org.gradle.wrapperupgrade.BuildToolStrategy.extractBuildToolVersion;
 
 public final class MavenBuildToolStrategy implements BuildToolStrategy {
 
-    private final MavenMetadataFetcher mavenMetadataFetcher = new MavenMetadataFetcher();
+    private static final String WRAPPER_PROPERTIES = ".mvn/wrapper/maven-wrapper.properties";
+    private static final String VERSION_REG_EXP = "apache-maven-(.*)-bin.zip";
+    private static final Set<String> GENERATED_PROPERTIES = new HashSet<>(Arrays.asList(
+        "wrapperVersion", "wrapperUrl", "wrapperSha256Sum", "distributionType", "distributionUrl", "distributionSha256Sum"));
+    private static final String TEMPLATE_POM = "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n" +
+        "  <modelVersion>4.0.0</modelVersion>\n" +
+        "  <groupId>org.gradle.wrapperupgrade</groupId>\n" +
+        "  <artifactId>wrapper-template</artifactId>\n" +
+        "  <version>1</version>\n" +
+        "  <packaging>pom</packaging>\n" +
+        "</project>\n";
+
     @Override
     public String buildToolName() {
         return "Maven";
     }
 
     @Override
-    public VersionInfo lookupLatestVersion(boolean allowPreRelease) throws IOException {
-        return mavenMetadataFetcher.fetchLatestVersion(allowPreRelease)
+    public VersionInfo lookupLatestVersion(HttpTransport transport, String metadataBaseUrl, boolean allowPreRelease) throws IOException {
+        return new MavenMetadataFetcher(transport, metadataBaseUrl).fetchLatestVersion(allowPreRelease)
             .map(latestVersion -> new VersionInfo(latestVersion.toString(), null))
             .orElseThrow(() -> new IllegalStateException("Could not determine latest Maven version"));
     }
 
+    @Override
+    public String defaultMetadataBaseUrl() {
+        return MavenMetadataFetcher.DEFAULT_REPOSITORY_URL;
+    }
+
     @Override
     public VersionInfo extractCurrentVersion(Path rootProjectDir) throws IOException {
         return extractBuildToolVersion(rootProjectDir,
-            ".mvn/wrapper/maven-wrapper.properties",
+            WRAPPER_PROPERTIES,
+            "distributionUrl", null,
+            VERSION_REG_EXP
+        );
+    }
+
+    @Override
+    public VersionInfo extractCurrentVersion(Properties wrapperProperties) {
+        return extractBuildToolVersion(wrapperProperties,
+            WRAPPER_PROPERTIES,
             "distributionUrl", null,
-            "apache-maven-(.*)-bin.zip"
+            VERSION_REG_EXP
         );
     }
 
+    @Override
+    public String wrapperPropertiesFile() {
+        return WRAPPER_PROPERTIES;
+    }
+
     @Override
     public void runWrapper(ExecOperations execOperations, Path rootProjectDir, VersionInfo version) {
         ExecUtils.execMavenCmd(execOperations, rootProjectDir, "-B", "-N", "wrapper:wrapper", "-Dmaven=" + version.version);
     }
 
+    @Override
+    public void writeWrapperFiles(ExecOperations execOperations, HttpTransport transport, WrapperTemplateCache templateCache, Path rootProjectDir, VersionInfo version) throws IOException {
+        Path propertiesFile = rootProjectDir.resolve(WRAPPER_PROPERTIES);
+        Map<String, String> existingValues = WrapperProperties.values(WrapperProperties.readLines(propertiesFile));
+        // The wrapper keeps the distribution type of the project it runs in, hence one template per distribution type
+        String key = version.version + "-" + existingValues.getOrDefault("distributionType", "default");
+        Path templateDir = templateCache.templateFor(execOperations, this, key, rootProjectDir, version,
+            Collections.singletonMap("pom.xml", TEMPLATE_POM));
+        WrapperTemplateCache.copyWrapperFile(templateDir, rootProjectDir, "mvnw");
+        WrapperTemplateCache.copyWrapperFile(templateDir, rootProjectDir, "mvnw.cmd");
+        WrapperTemplateCache.copyWrapperFile(templateDir, rootProjectDir, ".mvn/wrapper/maven-wrapper.jar");
+        WrapperTemplateCache.copyWrapperFile(templateDir, rootProjectDir, ".mvn/wrapper/MavenWrapperDownloader.java");
+
+        List<String> templateLines = WrapperProperties.readLines(templateDir.resolve(WRAPPER_PROPERTIES));
+        Map<String, String> overrides = new HashMap<>();
+        String generatedUrl = WrapperProperties.values(templateLines).get("distributionUrl");
+        if (generatedUrl != null) {
+            overrides.put("distributionUrl", WrapperProperties.distributionUrl(generatedUrl, existingValues.get("distributionUrl")));
+        }
+        WrapperProperties.write(propertiesFile, WrapperProperties.merge(templateLines, existingValues, GENERATED_PROPERTIES, overrides));
+    }
+
     @Override
     public List<Path> wrapperFiles(Path rootProjectDir) {
         List<Path> paths = new LinkedList<>();
@@ -49,6 +108,13 @@ public final class MavenBuildToolStrategy implements BuildToolStrategy {
         return paths;
     }
 
+    @Override
+    public List<String> sparseCheckoutDirs() {
+        List<String> dirs = new LinkedList<>();
+        dirs.add(".mvn");
+        return dirs;
+    }
+
     @Override
     public String releaseNotesLink(String buildToolVersion) {
         return "https://maven.apache.org/docs/$VERSION/release-notes.html".replace("$VERSION", buildToolVersion);
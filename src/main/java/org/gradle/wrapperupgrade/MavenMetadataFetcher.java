@@ -1,45 +1,100 @@
 package org.gradle.wrapperupgrade;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import org.gradle.util.internal.VersionNumber;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Comparator;
 import java.util.Optional;
-import java.util.function.Predicate;
-import java.util.stream.StreamSupport;
 
 public class MavenMetadataFetcher {
 
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+    static final String DEFAULT_REPOSITORY_URL = "https://repo.maven.apache.org/maven2";
+
+    private final HttpTransport transport;
     private final URL mavenMetadataUrl;
 
-    MavenMetadataFetcher(URL mavenMetadataUrl) {
+    MavenMetadataFetcher(HttpTransport transport, URL mavenMetadataUrl) {
+        this.transport = transport;
         this.mavenMetadataUrl = mavenMetadataUrl;
     }
 
-    MavenMetadataFetcher() {
+    MavenMetadataFetcher(URL mavenMetadataUrl) {
+        this(HttpTransport.URL_CONNECTION, mavenMetadataUrl);
+    }
+
+    MavenMetadataFetcher(HttpTransport transport, String repositoryUrl) {
         try {
-            this.mavenMetadataUrl = new URL("https://repo.maven.apache.org/maven2/org/apache/maven/maven-core/maven-metadata.xml");
+            this.transport = transport;
+            this.mavenMetadataUrl = new URL(repositoryUrl + "/org/apache/maven/maven-core/maven-metadata.xml");
         } catch (MalformedURLException e) {
             throw new RuntimeException(e);
         }
     }
 
     Optional<VersionNumber> fetchLatestVersion(boolean allowPreRelease) throws IOException {
-        XmlMapper mapper = new XmlMapper();
-        JsonNode mavenMetadata = mapper.readTree(mavenMetadataUrl).path("versioning").path("versions").path("version");
-        if (mavenMetadata.isMissingNode()) {
-            return Optional.empty();
+        try (InputStream is = transport.open(mavenMetadataUrl)) {
+            return findLatestVersion(is, allowPreRelease);
         }
-        Predicate<VersionNumber> isReleaseOrIdentity = allowPreRelease ? v -> true : v -> v.getQualifier() == null;
-        return StreamSupport.stream(mavenMetadata.spliterator(), false)
-            .map(n -> VersionNumber.parse(n.asText()))
-            .sorted(Comparator.reverseOrder())
-            .filter(isReleaseOrIdentity)
-            .findFirst();
+    }
+
+    /**
+     * Scans the `metadata/versioning/versions/version` elements in a single pass,
+     * keeping only the latest version and the latest release seen so far.
+     */
+    static Optional<VersionNumber> findLatestVersion(InputStream mavenMetadata, boolean allowPreRelease) throws IOException {
+        VersionNumber latestVersion = null;
+        VersionNumber latestRelease = null;
+        try {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(mavenMetadata);
+            try {
+                int depth = 0;
+                boolean inVersions = false;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        depth++;
+                        String name = reader.getLocalName();
+                        if (depth == 3 && "versions".equals(name)) {
+                            inVersions = true;
+                        } else if (depth == 4 && inVersions && "version".equals(name)) {
+                            VersionNumber version = VersionNumber.parse(reader.getElementText().trim());
+                            depth--;
+                            if (latestVersion == null || version.compareTo(latestVersion) > 0) {
+                                latestVersion = version;
+                            }
+                            if (version.getQualifier() == null && (latestRelease == null || version.compareTo(latestRelease) > 0)) {
+                                latestRelease = version;
+                            }
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        if (depth == 3) {
+                            inVersions = false;
+                        }
+                        depth--;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not parse Maven metadata", e);
+        }
+        return Optional.ofNullable(allowPreRelease ? latestVersion : latestRelease);
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
     }
 
 }
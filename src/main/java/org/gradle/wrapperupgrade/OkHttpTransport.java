@@ -0,0 +1,148 @@
+package org.gradle.wrapperupgrade;
+
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads over pooled connections, with HTTP/2 where the server and the JVM support it, transparent gzip compression,
+ * bounded retries that wait at least as long as the `Retry-After` header of throttled responses, up to a minute, and an optional on-disk cache
+ * whose entries are revalidated with their ETag or Last-Modified date.
+ * URLs that are not HTTP, like local files, are opened directly.
+ */
+final class OkHttpTransport implements HttpTransport, AutoCloseable {
+
+    private static final long CACHE_SIZE = 50L * 1024 * 1024;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration MAX_RETRY_AFTER = Duration.ofSeconds(60);
+    private static final CacheControl REVALIDATE = new CacheControl.Builder().maxAge(0, TimeUnit.SECONDS).build();
+
+    private final OkHttpClient httpClient;
+
+    OkHttpTransport(@Nullable File cacheDir) {
+        this(cacheDir, 3, Duration.ofSeconds(1));
+    }
+
+    OkHttpTransport(@Nullable File cacheDir, int maxRetries, Duration initialBackoff) {
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+            .connectTimeout(CONNECT_TIMEOUT)
+            .readTimeout(READ_TIMEOUT)
+            .addInterceptor(new RetryInterceptor(maxRetries, initialBackoff));
+        if (cacheDir != null) {
+            builder.cache(new Cache(cacheDir, CACHE_SIZE));
+        }
+        this.httpClient = builder.build();
+    }
+
+    @Override
+    public InputStream open(URL url) throws IOException {
+        if (!"http".equals(url.getProtocol()) && !"https".equals(url.getProtocol())) {
+            return url.openStream();
+        }
+        Request request = new Request.Builder()
+            .url(url)
+            .cacheControl(REVALIDATE)
+            .build();
+        Response response = httpClient.newCall(request).execute();
+        ResponseBody body = response.body();
+        if (!response.isSuccessful() || body == null) {
+            response.close();
+            throw new IOException(String.format("Could not download %s: %s %s", url, response.code(), response.message()));
+        }
+        return body.byteStream();
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+        if (httpClient.cache() != null) {
+            httpClient.cache().close();
+        }
+    }
+
+    private static final class RetryInterceptor implements Interceptor {
+
+        private final int maxRetries;
+        private final Duration initialBackoff;
+
+        private RetryInterceptor(int maxRetries, Duration initialBackoff) {
+            this.maxRetries = maxRetries;
+            this.initialBackoff = initialBackoff;
+        }
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            for (int attempt = 0; ; attempt++) {
+                long delayMillis = initialBackoff.toMillis() << attempt;
+                try {
+                    Response response = chain.proceed(chain.request());
+                    if (attempt == maxRetries || !isTransientFailure(response.code())) {
+                        return response;
+                    }
+                    long retryAfterMillis = retryAfterMillis(response);
+                    if (retryAfterMillis > MAX_RETRY_AFTER.toMillis()) {
+                        // Waiting longer would stall the build, and all the upgrades waiting for the same version lookup
+                        return response;
+                    }
+                    delayMillis = Math.max(delayMillis, retryAfterMillis);
+                    response.close();
+                } catch (IOException e) {
+                    if (attempt == maxRetries) {
+                        throw e;
+                    }
+                }
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while retrying " + chain.request().url());
+                }
+            }
+        }
+
+        /**
+         * Returns the delay requested by a throttling or unavailable server, in seconds or as a date, or 0 if none.
+         */
+        private static long retryAfterMillis(Response response) {
+            String retryAfter = response.header("Retry-After");
+            if (retryAfter == null || (response.code() != 429 && response.code() != 503)) {
+                return 0;
+            }
+            try {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+            } catch (NumberFormatException e) {
+                // Not a number of seconds, hence a date
+            }
+            try {
+                return Math.max(0, Duration.between(Instant.now(), ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)).toMillis());
+            } catch (DateTimeParseException e) {
+                return 0;
+            }
+        }
+
+        private static boolean isTransientFailure(int code) {
+            return code == 408 || code == 429 || code >= 500;
+        }
+
+    }
+
+}
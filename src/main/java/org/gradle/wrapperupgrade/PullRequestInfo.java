@@ -0,0 +1,24 @@
+package org.gradle.wrapperupgrade;
+
+import org.kohsuke.github.GHIssueState;
+
+/**
+ * The pull request data the upgrade relies on, independent of the GitHub API used to read it.
+ */
+final class PullRequestInfo {
+
+    final String id;
+    final int number;
+    final String headRef;
+    final GHIssueState state;
+    final String htmlUrl;
+
+    PullRequestInfo(String id, int number, String headRef, GHIssueState state, String htmlUrl) {
+        this.id = id;
+        this.number = number;
+        this.headRef = headRef;
+        this.state = state;
+        this.htmlUrl = htmlUrl;
+    }
+
+}
@@ -2,17 +2,21 @@ package org.gradle.wrapperupgrade;
 
 import org.gradle.util.internal.VersionNumber;
 import org.kohsuke.github.GHIssueState;
-import org.kohsuke.github.GHPullRequest;
 
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class PullRequestUtils {
 
     private static final String BRANCH_PREFIX = "wrapperbot/%s/%s-wrapper-";
-    private final Set<GHPullRequest> pullRequests;
+    private final Iterable<PullRequestInfo> pullRequests;
 
-    PullRequestUtils(Set<GHPullRequest> pullRequests) {
+    /**
+     * The pull requests are streamed lazily, so that a paged query stops fetching pages as soon as the answer is known.
+     */
+    PullRequestUtils(Iterable<PullRequestInfo> pullRequests) {
         this.pullRequests = pullRequests;
     }
 
@@ -20,12 +24,12 @@ public class PullRequestUtils {
         return String.format(BRANCH_PREFIX, project, buildTool.toLowerCase());
     }
 
-    Set<GHPullRequest> pullRequestsToClose(String project, String buildTool, String latestBuildToolVersion) {
+    Set<PullRequestInfo> pullRequestsToClose(String project, String buildTool, String latestBuildToolVersion) {
         VersionNumber latest = VersionNumber.parse(latestBuildToolVersion);
-        return pullRequests.stream()
-                .filter(p -> p.getState() != GHIssueState.CLOSED)
+        return stream()
+                .filter(p -> p.state != GHIssueState.CLOSED)
                 .filter(p -> {
-                    String branch = p.getHead().getRef();
+                    String branch = p.headRef;
                     String prefix = branchPrefix(project, buildTool);
                     int index = branch.lastIndexOf(prefix);
                     return index == 0 && latest.compareTo(VersionNumber.parse(branch.substring(prefix.length()))) > 0;
@@ -35,6 +39,10 @@ public class PullRequestUtils {
     }
 
     boolean closedPrExists(String branch) {
-        return pullRequests.stream().anyMatch(p -> branch.equals(p.getHead().getRef()) && p.getState() == GHIssueState.CLOSED);
+        return stream().anyMatch(p -> branch.equals(p.headRef) && p.state == GHIssueState.CLOSED);
+    }
+
+    private Stream<PullRequestInfo> stream() {
+        return StreamSupport.stream(pullRequests.spliterator(), false);
     }
 }
@@ -0,0 +1,148 @@
+package org.gradle.wrapperupgrade;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.kohsuke.github.GHFileNotFoundException;
+import org.kohsuke.github.GHIssueState;
+import org.kohsuke.github.GHPullRequest;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GHUser;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.PagedIterable;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+final class RestGitHubRepositoryClient implements GitHubRepositoryClient {
+
+    private static final Logger LOGGER = Logging.getLogger(RestGitHubRepositoryClient.class);
+
+    private final GitHubClientService gitHubClientService;
+    private final GitHub gitHub;
+    private final String project;
+    private final String repositoryName;
+    private final String prBranch;
+    private final String branchPrefix;
+    private final Map<Integer, GHPullRequest> pullRequests = new ConcurrentHashMap<>();
+    private GHRepository repository;
+
+    RestGitHubRepositoryClient(GitHubClientService gitHubClientService, GitHub gitHub, String project, String repositoryName, String prBranch, String branchPrefix) {
+        this.gitHubClientService = gitHubClientService;
+        this.gitHub = gitHub;
+        this.project = project;
+        this.repositoryName = repositoryName;
+        this.prBranch = prBranch;
+        this.branchPrefix = branchPrefix;
+    }
+
+    private GHRepository repository() throws IOException {
+        if (repository == null) {
+            repository = gitHub.getRepository(repositoryName);
+        }
+        return repository;
+    }
+
+    @Override
+    public boolean branchExists() throws IOException {
+        try {
+            repository().getBranch(prBranch);
+            return true;
+        } catch (GHFileNotFoundException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean closedPullRequestExists() throws IOException {
+        // Filtered by GitHub on the exact head branch, instead of paging through the whole pull request history
+        PagedIterable<GHPullRequest> closedPullRequests = repository().queryPullRequests()
+            .head(repository().getOwnerName() + ":" + prBranch)
+            .state(GHIssueState.CLOSED)
+            .list();
+        return new PullRequestUtils(() -> StreamSupport.stream(closedPullRequests.spliterator(), false).map(this::toInfo).iterator())
+            .closedPrExists(prBranch);
+    }
+
+    @Override
+    public Iterable<PullRequestInfo> openPullRequests() throws IOException {
+        PagedIterable<GHPullRequest> openPullRequests = repository().queryPullRequests()
+            .state(GHIssueState.OPEN)
+            .list()
+            .withPageSize(100);
+        return () -> StreamSupport.stream(openPullRequests.spliterator(), false)
+            .filter(pr -> pr.getHead().getRef().startsWith(branchPrefix))
+            .map(this::toInfo)
+            .iterator();
+    }
+
+    @Override
+    public PullRequestInfo createPullRequest(String title, String baseBranch, String body) throws IOException {
+        return toInfo(repository().createPullRequest(title, prBranch, baseBranch, body));
+    }
+
+    /**
+     * The labels, reviewers and assignees are set one after another, as GitHub recommends sending mutations serially.
+     */
+    @Override
+    public void decoratePullRequest(PullRequestInfo pullRequest, List<String> labels, List<String> reviewers, List<String> assignees) {
+        GHPullRequest pr = pullRequests.get(pullRequest.number);
+        if (!labels.isEmpty()) {
+            try {
+                pr.addLabels(labels.toArray(new String[0]));
+            } catch (IOException e) {
+                LOGGER.warn(String.format("Error adding labels on project '%s': %s", project, e.getMessage() != null ? e.getMessage() : "Unable to add labels"));
+            }
+        }
+        if (!reviewers.isEmpty()) {
+            try {
+                pr.requestReviewers(mapToGHUsers(reviewers));
+            } catch (IOException e) {
+                LOGGER.warn(String.format("Error requesting reviewers on project '%s': %s", project, e.getMessage() != null ? e.getMessage() : "Unable to request reviewers"));
+            }
+        }
+        if (!assignees.isEmpty()) {
+            try {
+                pr.addAssignees(mapToGHUsers(assignees));
+            } catch (IOException e) {
+                LOGGER.warn(String.format("Error adding assignees on project '%s': %s", project, e.getMessage() != null ? e.getMessage() : "Unable to add assignees"));
+            }
+        }
+    }
+
+    @Override
+    public void closePullRequests(Collection<PullRequestInfo> prs) {
+        for (PullRequestInfo pr : prs) {
+            try {
+                pullRequests.get(pr.number).close();
+            } catch (IOException e) {
+                LOGGER.warn(String.format("Error closing pull request #%s on project '%s'", pr.number, project), e);
+            }
+        }
+    }
+
+    private PullRequestInfo toInfo(GHPullRequest pr) {
+        pullRequests.put(pr.getNumber(), pr);
+        return new PullRequestInfo(pr.getNodeId(), pr.getNumber(), pr.getHead().getRef(), pr.getState(), pr.getHtmlUrl().toString());
+    }
+
+    private List<GHUser> mapToGHUsers(List<String> users) {
+        return users.stream()
+            .map(user -> {
+                try {
+                    return gitHubClientService.user(user);
+                } catch (IOException e) {
+                    LOGGER.warn(String.format("Error fetching GitHub user '%s'", user), e);
+                    return null;
+                }
+            })
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,63 @@
+package org.gradle.wrapperupgrade;
+
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Shares one working copy between the projects with the same repository and base branch, so that the repository is checked out
+ * once per build rather than once per project. The upgrade tasks of the projects sharing a working copy are ordered,
+ * so that they use it one at a time.
+ */
+public abstract class SharedCheckoutService implements BuildService<BuildServiceParameters.None> {
+
+    private final Map<Path, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private final Set<Path> checkedOut = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Uses the given working copy until the returned lease is closed. Fails rather than waits if another project uses it,
+     * as a waiting upgrade would hold a worker.
+     */
+    Lease acquire(Path gitCheckoutDir) {
+        Path dir = gitCheckoutDir.toAbsolutePath().normalize();
+        ReentrantLock lock = locks.computeIfAbsent(dir, d -> new ReentrantLock());
+        if (!lock.tryLock()) {
+            throw new IllegalStateException(String.format("The shared working copy %s is used by another project", dir));
+        }
+        return new Lease(dir, lock);
+    }
+
+    final class Lease implements AutoCloseable {
+
+        private final Path dir;
+        private final ReentrantLock lock;
+
+        private Lease(Path dir, ReentrantLock lock) {
+            this.dir = dir;
+            this.lock = lock;
+        }
+
+        /**
+         * Returns whether the working copy has been checked out by a previous project of this build.
+         */
+        boolean isCheckedOut() {
+            return checkedOut.contains(dir);
+        }
+
+        void checkedOut() {
+            checkedOut.add(dir);
+        }
+
+        @Override
+        public void close() {
+            lock.unlock();
+        }
+
+    }
+
+}
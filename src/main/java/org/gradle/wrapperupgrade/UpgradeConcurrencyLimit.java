@@ -0,0 +1,10 @@
+package org.gradle.wrapperupgrade;
+
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+/**
+ * Used by all upgrade tasks to bound the number of upgrades running concurrently through its max parallel usages.
+ */
+public abstract class UpgradeConcurrencyLimit implements BuildService<BuildServiceParameters.None> {
+}
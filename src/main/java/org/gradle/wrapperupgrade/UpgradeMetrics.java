@@ -0,0 +1,160 @@
+package org.gradle.wrapperupgrade;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import org.gradle.api.Action;
+import org.gradle.process.ExecOperations;
+import org.gradle.process.ExecResult;
+import org.gradle.process.ExecSpec;
+import org.gradle.process.JavaExecSpec;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the time spent in each phase of an upgrade, as well as the process spawns, GitHub API calls and cloned bytes.
+ */
+final class UpgradeMetrics {
+
+    static final String PROCESS_SPAWNS = "processSpawns";
+    static final String API_CALLS = "apiCalls";
+    static final String BYTES_CLONED = "bytesCloned";
+
+    enum Outcome {
+        UP_TO_DATE, BRANCH_EXISTS, CLOSED_PULL_REQUEST_EXISTS, PULL_REQUEST_CREATED, UNCHANGED, DRY_RUN, FAILED
+    }
+
+    interface Phase<T> {
+        T run() throws IOException;
+    }
+
+    interface VoidPhase {
+        void run() throws IOException;
+    }
+
+    /**
+     * The metrics of the upgrade running on the current thread, which the GitHub client counts its calls against.
+     */
+    private static final ThreadLocal<UpgradeMetrics> CURRENT = new ThreadLocal<>();
+
+    final String project;
+    final String buildTool;
+    final String repository;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> phaseMillis = new LinkedHashMap<>();
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+    private long durationMillis;
+    private Outcome outcome;
+    private String failure;
+
+    UpgradeMetrics(String project, String buildTool, String repository) {
+        this.project = project;
+        this.buildTool = buildTool;
+        this.repository = repository;
+        counters.put(PROCESS_SPAWNS, 0L);
+        counters.put(API_CALLS, 0L);
+        counters.put(BYTES_CLONED, 0L);
+    }
+
+    <T> T phase(String name, Phase<T> phase) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return phase.run();
+        } finally {
+            addPhaseTime(name, System.nanoTime() - start);
+        }
+    }
+
+    void phase(String name, VoidPhase phase) throws IOException {
+        phase(name, () -> {
+            phase.run();
+            return null;
+        });
+    }
+
+    private synchronized void addPhaseTime(String name, long nanos) {
+        phaseMillis.merge(name, TimeUnit.NANOSECONDS.toMillis(nanos), Long::sum);
+    }
+
+    synchronized void increment(String counter, long value) {
+        counters.merge(counter, value, Long::sum);
+    }
+
+    synchronized void finish(Outcome outcome, String failure) {
+        this.durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        this.outcome = outcome;
+        this.failure = failure;
+    }
+
+    synchronized Map<String, Long> phaseMillis() {
+        return new LinkedHashMap<>(phaseMillis);
+    }
+
+    synchronized Map<String, Long> counters() {
+        return new LinkedHashMap<>(counters);
+    }
+
+    synchronized long durationMillis() {
+        return durationMillis;
+    }
+
+    synchronized Outcome outcome() {
+        return outcome;
+    }
+
+    synchronized String failure() {
+        return failure;
+    }
+
+    /**
+     * Counts the processes spawned through the returned exec operations.
+     */
+    ExecOperations countingExecOperations(ExecOperations delegate) {
+        return new ExecOperations() {
+            @Override
+            public ExecResult exec(Action<? super ExecSpec> action) {
+                increment(PROCESS_SPAWNS, 1);
+                return delegate.exec(action);
+            }
+
+            @Override
+            public ExecResult javaexec(Action<? super JavaExecSpec> action) {
+                increment(PROCESS_SPAWNS, 1);
+                return delegate.javaexec(action);
+            }
+        };
+    }
+
+    /**
+     * Makes the GitHub calls of the current thread count against these metrics until the returned scope is closed.
+     */
+    Scope activate() {
+        UpgradeMetrics previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> CURRENT.set(previous);
+    }
+
+    interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * Counts the calls made by a shared HTTP client against the metrics of the upgrade running on the calling thread.
+     */
+    static final class ApiCallCounter implements Interceptor {
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            UpgradeMetrics metrics = CURRENT.get();
+            if (metrics != null) {
+                metrics.increment(API_CALLS, 1);
+            }
+            return chain.proceed(chain.request());
+        }
+
+    }
+
+}
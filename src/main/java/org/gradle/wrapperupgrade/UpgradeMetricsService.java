@@ -0,0 +1,92 @@
+package org.gradle.wrapperupgrade;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects the metrics of all upgrades of a build and writes them as a JSON report at the end of the build.
+ */
+public abstract class UpgradeMetricsService implements BuildService<UpgradeMetricsService.Params>, AutoCloseable {
+
+    public interface Params extends BuildServiceParameters {
+
+        RegularFileProperty getReportFile();
+
+    }
+
+    private static final Logger LOGGER = Logging.getLogger(UpgradeMetricsService.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final Instant startTime = Instant.now();
+    private final List<UpgradeMetrics> upgrades = new ArrayList<>();
+
+    synchronized void record(UpgradeMetrics metrics) {
+        upgrades.add(metrics);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (upgrades.isEmpty() || !getParameters().getReportFile().isPresent()) {
+            return;
+        }
+        File reportFile = getParameters().getReportFile().get().getAsFile();
+        Files.createDirectories(reportFile.getParentFile().toPath());
+        MAPPER.writeValue(reportFile, report());
+        LOGGER.info("Wrapper upgrade report written to {}", reportFile);
+    }
+
+    synchronized ObjectNode report() {
+        ObjectNode report = MAPPER.createObjectNode();
+        report.put("startTime", startTime.toString());
+        Map<String, Long> totalPhaseMillis = new TreeMap<>();
+        Map<String, Long> totalCounters = new TreeMap<>();
+        ArrayNode upgradesNode = report.putArray("upgrades");
+        upgrades.stream()
+            .sorted(Comparator.comparingLong(UpgradeMetrics::durationMillis).reversed())
+            .forEach(metrics -> {
+                ObjectNode upgrade = upgradesNode.addObject();
+                upgrade.put("project", metrics.project);
+                upgrade.put("buildTool", metrics.buildTool);
+                upgrade.put("repository", metrics.repository);
+                upgrade.put("outcome", metrics.outcome().name());
+                if (metrics.failure() != null) {
+                    upgrade.put("failure", metrics.failure());
+                }
+                upgrade.put("durationMillis", metrics.durationMillis());
+                ObjectNode phases = upgrade.putObject("phaseMillis");
+                metrics.phaseMillis().forEach((name, millis) -> {
+                    phases.put(name, millis);
+                    totalPhaseMillis.merge(name, millis, Long::sum);
+                });
+                ObjectNode counters = upgrade.putObject("counters");
+                metrics.counters().forEach((name, value) -> {
+                    counters.put(name, value);
+                    totalCounters.merge(name, value, Long::sum);
+                });
+            });
+        ObjectNode totals = report.putObject("totals");
+        totals.put("upgrades", upgrades.size());
+        totalPhaseMillis.forEach(totals.putObject("phaseMillis")::put);
+        totalCounters.forEach(totals.putObject("counters")::put);
+        return report;
+    }
+
+}
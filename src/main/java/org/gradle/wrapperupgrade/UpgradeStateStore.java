@@ -0,0 +1,136 @@
+package org.gradle.wrapperupgrade;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Keeps the state of each project after its last upgrade, so that a project whose base branch and latest build tool version
+ * have not changed since can be skipped without being cloned.
+ */
+final class UpgradeStateStore {
+
+    private static final String CONFIGURATION_KEY = "configuration";
+    private static final String BASE_COMMIT_KEY = "baseCommit";
+    private static final String USED_VERSION_KEY = "usedVersion";
+    private static final String LATEST_VERSION_KEY = "latestVersion";
+    private static final String OUTCOME_KEY = "outcome";
+
+    private final Path stateDir;
+
+    UpgradeStateStore(Path stateDir) {
+        this.stateDir = stateDir;
+    }
+
+    Optional<State> read(String key) {
+        Path stateFile = stateFile(key);
+        if (!Files.isRegularFile(stateFile)) {
+            return Optional.empty();
+        }
+        Properties props = new Properties();
+        try (InputStream is = Files.newInputStream(stateFile)) {
+            props.load(is);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+        String configuration = props.getProperty(CONFIGURATION_KEY);
+        String baseCommit = props.getProperty(BASE_COMMIT_KEY);
+        String usedVersion = props.getProperty(USED_VERSION_KEY);
+        String latestVersion = props.getProperty(LATEST_VERSION_KEY);
+        String outcome = props.getProperty(OUTCOME_KEY);
+        if (configuration == null || baseCommit == null || usedVersion == null || latestVersion == null || outcome == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new State(configuration, baseCommit, usedVersion, latestVersion, UpgradeMetrics.Outcome.valueOf(outcome)));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    void write(String key, State state) throws IOException {
+        Properties props = new Properties();
+        props.setProperty(CONFIGURATION_KEY, state.configuration);
+        props.setProperty(BASE_COMMIT_KEY, state.baseCommit);
+        props.setProperty(USED_VERSION_KEY, state.usedVersion);
+        props.setProperty(LATEST_VERSION_KEY, state.latestVersion);
+        props.setProperty(OUTCOME_KEY, state.outcome.name());
+
+        Files.createDirectories(stateDir);
+        Path tmpFile = Files.createTempFile(stateDir, key, ".tmp");
+        try (OutputStream os = Files.newOutputStream(tmpFile)) {
+            props.store(os, null);
+        }
+        Files.move(tmpFile, stateFile(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path stateFile(String key) {
+        return stateDir.resolve(key + ".properties");
+    }
+
+    static final class State {
+
+        /**
+         * A hash of the options of the project that affect the outcome of its upgrade.
+         */
+        final String configuration;
+        final String baseCommit;
+        final String usedVersion;
+        final String latestVersion;
+        final UpgradeMetrics.Outcome outcome;
+
+        State(String configuration, String baseCommit, String usedVersion, String latestVersion, UpgradeMetrics.Outcome outcome) {
+            this.configuration = configuration;
+            this.baseCommit = baseCommit;
+            this.usedVersion = usedVersion;
+            this.latestVersion = latestVersion;
+            this.outcome = outcome;
+        }
+
+        /**
+         * Returns whether upgrading the project again would have the same outcome, given its current configuration hash and remote state.
+         * A project whose pull request branch has been deleted is upgraded again, in case the branch should be recreated.
+         */
+        boolean isUnchanged(String currentConfiguration, RemoteState remoteState) {
+            if (!configuration.equals(currentConfiguration)
+                || !baseCommit.equals(remoteState.baseCommit)
+                || !latestVersion.equals(remoteState.latestVersion)) {
+                return false;
+            }
+            switch (outcome) {
+                case UP_TO_DATE:
+                case CLOSED_PULL_REQUEST_EXISTS:
+                    return true;
+                case BRANCH_EXISTS:
+                case PULL_REQUEST_CREATED:
+                    return remoteState.prBranchExists;
+                default:
+                    return false;
+            }
+        }
+
+    }
+
+    /**
+     * The head of the base branch of a project, the latest build tool version, and whether the branch of the previous pull request still exists.
+     */
+    static final class RemoteState {
+
+        final String baseCommit;
+        final String latestVersion;
+        final boolean prBranchExists;
+
+        RemoteState(String baseCommit, String latestVersion, boolean prBranchExists) {
+            this.baseCommit = baseCommit;
+            this.latestVersion = latestVersion;
+            this.prBranchExists = prBranchExists;
+        }
+
+    }
+
+}
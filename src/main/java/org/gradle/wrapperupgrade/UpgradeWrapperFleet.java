@@ -0,0 +1,183 @@
+package org.gradle.wrapperupgrade;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.ProjectLayout;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.specs.Specs;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.DisableCachingByDefault;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutionException;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Upgrades the wrapper of all the projects of a fleet manifest, without a task per project. The projects are read from the manifest
+ * as the upgrades progress, and at most `maxConcurrentUpgrades` projects are upgraded at a time, so that neither the Gradle model
+ * nor the memory of the task grow with the size of the fleet. The next project starts as soon as any upgrade completes,
+ * and the clone of each project is deleted after its upgrade.
+ */
+@DisableCachingByDefault(because = "Produces no cacheable output")
+public abstract class UpgradeWrapperFleet extends DefaultTask {
+
+    private final ProjectLayout layout;
+    private final WorkerExecutor workerExecutor;
+
+    @Inject
+    public UpgradeWrapperFleet(ProjectLayout layout, WorkerExecutor workerExecutor) {
+        this.layout = layout;
+        this.workerExecutor = workerExecutor;
+        // The latest version of the build tools is not an input, hence the upgrades always run
+        getOutputs().upToDateWhen(Specs.satisfyNone());
+    }
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getManifest();
+
+    @Input
+    public abstract Property<Integer> getMaxConcurrentUpgrades();
+
+    @Internal
+    public abstract Property<Integer> getMaxWorkers();
+
+    @Input
+    public abstract Property<Boolean> getDryRun();
+
+    @Input
+    public abstract Property<Boolean> getUnsignedCommits();
+
+    @OutputDirectory
+    public abstract DirectoryProperty getCheckoutsDir();
+
+    @Internal
+    public abstract Property<VersionMetadataService> getVersionMetadataService();
+
+    @Internal
+    public abstract Property<GitHubClientService> getGitHubClientService();
+
+    @Internal
+    public abstract Property<WrapperHomeService> getWrapperHomeService();
+
+    @Internal
+    public abstract Property<UpgradeMetricsService> getUpgradeMetricsService();
+
+    @Internal
+    public abstract Property<FleetWindowService> getFleetWindowService();
+
+    @Internal
+    public abstract DirectoryProperty getGitRepositoryCacheDir();
+
+    @Internal
+    public abstract DirectoryProperty getWrapperTemplateCacheDir();
+
+    @Internal
+    public abstract DirectoryProperty getUpgradeStateDir();
+
+    @TaskAction
+    void upgrade() throws IOException, InterruptedException {
+        WorkQueue workQueue = workerExecutor.noIsolation();
+        int maxConcurrentUpgrades = Math.max(1, getMaxConcurrentUpgrades().get());
+        // The task holds a worker while it waits for a slot, hence with a single worker the upgrades only run while the task awaits them
+        boolean awaitEachUpgrade = getMaxWorkers().get() < 2;
+        int upgrades = 0;
+        int failures = 0;
+        try (FleetWindowService.Window window = getFleetWindowService().get().open(getPath(), maxConcurrentUpgrades)) {
+            try (FleetManifest manifest = FleetManifest.open(getManifest().get().getAsFile().toPath())) {
+                while (true) {
+                    FleetManifest.Entry entry;
+                    try {
+                        entry = manifest.next();
+                    } catch (IllegalArgumentException e) {
+                        // An invalid project fails like a failed upgrade, without stopping the upgrade of the following projects
+                        getLogger().error(e.getMessage());
+                        failures++;
+                        upgrades++;
+                        continue;
+                    }
+                    if (entry == null) {
+                        break;
+                    }
+                    window.acquire();
+                    Path checkoutDir = getCheckoutsDir().get().getAsFile().toPath().resolve(upgrades + "-" + entry.name);
+                    submit(workQueue, entry, checkoutDir);
+                    upgrades++;
+                    if (awaitEachUpgrade) {
+                        failures += await(workQueue);
+                        // A work queue reports the failures of all its previous work items on each wait
+                        workQueue = workerExecutor.noIsolation();
+                    }
+                }
+            } finally {
+                failures += await(workQueue);
+            }
+        }
+        if (failures > 0) {
+            throw new IllegalStateException(String.format("%d of the %d projects of the fleet manifest could not be upgraded", failures, upgrades));
+        }
+        getLogger().lifecycle(String.format("Upgraded the %d projects of the fleet manifest", upgrades));
+    }
+
+    /**
+     * Waits for the remaining upgrades. Returns the number of failed upgrades, which do not stop the other upgrades.
+     */
+    private int await(WorkQueue workQueue) {
+        try {
+            workQueue.await();
+            return 0;
+        } catch (WorkerExecutionException e) {
+            for (Throwable failure : e.getCauses()) {
+                getLogger().error(failure.getMessage() + (failure.getCause() != null ? ": " + failure.getCause().getMessage() : ""));
+            }
+            return e.getCauses().size();
+        }
+    }
+
+    private void submit(WorkQueue workQueue, FleetManifest.Entry entry, Path checkoutDir) {
+        workQueue.submit(UpgradeWrapperWorkAction.class, params -> {
+            params.getProject().set(entry.name);
+            params.getBuildTool().set(entry.buildToolStrategy.buildToolName());
+            params.getRepo().set(entry.repo);
+            params.getDir().set(entry.dir);
+            params.getBaseBranch().set(entry.baseBranch);
+            params.getGitCommitExtraArgs().set(entry.listOption("gitCommitExtraArgs"));
+            params.getAllowPreRelease().set(entry.booleanOption("allowPreRelease"));
+            params.getRecreateClosedPullRequest().set(entry.booleanOption("recreateClosedPullRequest"));
+            params.getLabels().set(entry.listOption("labels"));
+            params.getAssignees().set(entry.listOption("assignees"));
+            params.getReviewers().set(entry.listOption("reviewers"));
+            params.getSparseCheckout().set(entry.booleanOption("sparseCheckout"));
+            params.getSparseCheckoutDirs().set(entry.listOption("sparseCheckoutDirs"));
+            params.getUseWrapperTemplates().set(entry.booleanOption("useWrapperTemplates"));
+            params.getRemoteVersionCheck().set(entry.booleanOption("remoteVersionCheck"));
+            params.getEmbeddedGit().set(entry.booleanOption("embeddedGit"));
+            params.getRemoteCommit().set(entry.booleanOption("remoteCommit"));
+            params.getDryRun().set(getDryRun());
+            params.getUnsignedCommits().set(getUnsignedCommits());
+            params.getExecutionRootDir().set(layout.getProjectDirectory());
+            params.getCheckoutDir().set(checkoutDir.toFile());
+            params.getDeletableCheckoutsDir().set(getCheckoutsDir());
+            params.getFleetWindowService().set(getFleetWindowService());
+            params.getFleetWindowKey().set(getPath());
+            params.getGitRepositoryCacheDir().set(getGitRepositoryCacheDir());
+            params.getWrapperTemplateCacheDir().set(getWrapperTemplateCacheDir());
+            params.getUpgradeStateDir().set(getUpgradeStateDir());
+            params.getVersionMetadataService().set(getVersionMetadataService());
+            params.getGitHubClientService().set(getGitHubClientService());
+            params.getWrapperHomeService().set(getWrapperHomeService());
+            params.getUpgradeMetricsService().set(getUpgradeMetricsService());
+        });
+    }
+
+}
@@ -0,0 +1,629 @@
+package org.gradle.wrapperupgrade;
+
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.process.ExecOperations;
+import org.gradle.util.internal.VersionNumber;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.gradle.wrapperupgrade.BuildToolStrategy.VersionInfo;
+import org.kohsuke.github.GitHub;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.gradle.wrapperupgrade.PullRequestUtils.branchPrefix;
+
+public abstract class UpgradeWrapperWorkAction implements WorkAction<UpgradeWrapperWorkAction.Parameters> {
+
+    private static final Logger LOGGER = Logging.getLogger(UpgradeWrapperWorkAction.class);
+
+    private static final Pattern GITHUB_URL = Pattern.compile("https://github\\.com/([^/]+/[^/]+?)(?:\\.git)?/?");
+
+    public interface Parameters extends WorkParameters {
+
+        Property<String> getProject();
+
+        Property<String> getBuildTool();
+
+        Property<String> getRepo();
+
+        Property<String> getDir();
+
+        Property<String> getBaseBranch();
+
+        ListProperty<String> getGitCommitExtraArgs();
+
+        Property<Boolean> getAllowPreRelease();
+
+        Property<Boolean> getRecreateClosedPullRequest();
+
+        ListProperty<String> getLabels();
+
+        ListProperty<String> getAssignees();
+
+        ListProperty<String> getReviewers();
+
+        Property<Boolean> getSparseCheckout();
+
+        ListProperty<String> getSparseCheckoutDirs();
+
+        Property<Boolean> getUseWrapperTemplates();
+
+        Property<Boolean> getRemoteVersionCheck();
+
+        Property<Boolean> getEmbeddedGit();
+
+        Property<Boolean> getRemoteCommit();
+
+        Property<Boolean> getDryRun();
+
+        Property<Boolean> getUnsignedCommits();
+
+        DirectoryProperty getExecutionRootDir();
+
+        DirectoryProperty getCheckoutDir();
+
+        /**
+         * The directory of the clones deleted after their upgrade, for the projects of a fleet.
+         */
+        DirectoryProperty getDeletableCheckoutsDir();
+
+        Property<FleetWindowService> getFleetWindowService();
+
+        Property<String> getFleetWindowKey();
+
+        Property<SharedCheckoutService> getSharedCheckoutService();
+
+        DirectoryProperty getGitRepositoryCacheDir();
+
+        DirectoryProperty getWrapperTemplateCacheDir();
+
+        DirectoryProperty getUpgradeStateDir();
+
+        Property<VersionMetadataService> getVersionMetadataService();
+
+        Property<GitHubClientService> getGitHubClientService();
+
+        Property<WrapperHomeService> getWrapperHomeService();
+
+        Property<UpgradeMetricsService> getUpgradeMetricsService();
+
+    }
+
+    private final ExecOperations injectedExecOperations;
+    private ExecOperations execOperations;
+    private BuildToolStrategy buildToolStrategy;
+    private UpgradeMetrics metrics;
+    private String usedVersion;
+
+    @Inject
+    public UpgradeWrapperWorkAction(ExecOperations execOperations) {
+        this.injectedExecOperations = execOperations;
+    }
+
+    @Override
+    public void execute() {
+        buildToolStrategy = BuildToolStrategy.forName(getParameters().getBuildTool().get());
+        metrics = new UpgradeMetrics(getParameters().getProject().get(), buildToolStrategy.buildToolName(), getParameters().getRepo().get());
+        ExecOperations wrapperExecOperations = getParameters().getWrapperHomeService().isPresent()
+            ? getParameters().getWrapperHomeService().get().execOperations(injectedExecOperations)
+            : injectedExecOperations;
+        execOperations = metrics.countingExecOperations(wrapperExecOperations);
+        try (UpgradeMetrics.Scope ignored = metrics.activate()) {
+            metrics.finish(upgrade(), null);
+        } catch (IOException e) {
+            metrics.finish(UpgradeMetrics.Outcome.FAILED, e.toString());
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            metrics.finish(UpgradeMetrics.Outcome.FAILED, e.toString());
+            throw e;
+        } finally {
+            if (getParameters().getUpgradeMetricsService().isPresent()) {
+                getParameters().getUpgradeMetricsService().get().record(metrics);
+            }
+            complete();
+        }
+    }
+
+    /**
+     * Deletes the clone of a fleet project and gives back its slot, so that the fleet task starts the next project.
+     */
+    private void complete() {
+        try {
+            if (getParameters().getDeletableCheckoutsDir().isPresent()) {
+                Path checkoutsDir = getParameters().getDeletableCheckoutsDir().get().getAsFile().toPath().toAbsolutePath().normalize();
+                Path checkoutDir = getParameters().getCheckoutDir().get().getAsFile().toPath().toAbsolutePath().normalize();
+                if (!checkoutDir.startsWith(checkoutsDir) || checkoutDir.equals(checkoutsDir)) {
+                    throw new IOException(String.format("%s is not within %s", checkoutDir, checkoutsDir));
+                }
+                WrapperTemplateCache.deleteRecursively(checkoutDir);
+            }
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not delete the clone of project '%s': %s", getParameters().getProject().get(), e.getMessage()));
+        } finally {
+            if (getParameters().getFleetWindowService().isPresent()) {
+                getParameters().getFleetWindowService().get().release(getParameters().getFleetWindowKey().get());
+            }
+        }
+    }
+
+    private UpgradeMetrics.Outcome upgrade() throws IOException {
+        if (!getParameters().getUpgradeStateDir().isPresent()) {
+            return upgradeIfNeeded();
+        }
+        UpgradeStateStore stateStore = new UpgradeStateStore(getParameters().getUpgradeStateDir().get().getAsFile().toPath());
+        String stateKey = (buildToolStrategy.buildToolName() + "-" + getParameters().getProject().get()).toLowerCase().replaceAll("[^a-z0-9._-]", "_");
+        Optional<UpgradeStateStore.State> previousState = stateStore.read(stateKey);
+        Optional<UpgradeStateStore.RemoteState> remoteState = metrics.phase("stateCheck", () -> remoteState(previousState));
+        if (previousState.isPresent() && remoteState.isPresent() && previousState.get().isUnchanged(configurationHash(), remoteState.get())) {
+            LOGGER.lifecycle(String.format("No changes to upgrade %s Wrapper since the previous upgrade of project '%s' (%s)",
+                buildToolStrategy.buildToolName(), getParameters().getProject().get(), previousState.get().outcome));
+            return UpgradeMetrics.Outcome.UNCHANGED;
+        }
+        UpgradeMetrics.Outcome outcome = upgradeIfNeeded();
+        if (remoteState.isPresent() && usedVersion != null && outcome != UpgradeMetrics.Outcome.DRY_RUN) {
+            stateStore.write(stateKey, new UpgradeStateStore.State(configurationHash(), remoteState.get().baseCommit, usedVersion, remoteState.get().latestVersion, outcome));
+        }
+        return outcome;
+    }
+
+    /**
+     * Looks up the head of the base branch, the latest version, and whether the branch of the previous pull request still exists,
+     * without cloning the repository. Any failure runs the regular upgrade.
+     */
+    private Optional<UpgradeStateStore.RemoteState> remoteState(Optional<UpgradeStateStore.State> previousState) {
+        Parameters parameters = getParameters();
+        String project = parameters.getProject().get();
+        String baseBranch = parameters.getBaseBranch().get();
+        try {
+            String latestVersion = parameters.getVersionMetadataService().get().lookupLatestVersion(buildToolStrategy, parameters.getAllowPreRelease().getOrElse(false)).version;
+            List<String> branches = new ArrayList<>(Collections.singletonList(baseBranch));
+            Optional<String> prBranch = previousState.map(state -> branchPrefix(project, buildToolStrategy.buildToolName().toLowerCase()) +
+                (VersionNumber.parse(state.usedVersion).compareTo(VersionNumber.parse(latestVersion)) >= 0 ? state.usedVersion : latestVersion));
+            prBranch.ifPresent(branches::add);
+            Map<String, String> heads = GitCloneUtils.remoteBranchHeads(execOperations, Params.gitUrl(parameters.getRepo().get()),
+                parameters.getExecutionRootDir().get().getAsFile().toPath(), branches);
+            if (!heads.containsKey(baseBranch)) {
+                return Optional.empty();
+            }
+            return Optional.of(new UpgradeStateStore.RemoteState(heads.get(baseBranch), latestVersion, prBranch.map(heads::containsKey).orElse(false)));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.info(String.format("Could not compare project '%s' with its previous upgrade: %s", project, e.getMessage()));
+            return Optional.empty();
+        }
+    }
+
+    private String configurationHash() {
+        Parameters parameters = getParameters();
+        return GitCloneUtils.sha256(String.join("\n",
+            parameters.getRepo().get(),
+            parameters.getDir().get(),
+            parameters.getBaseBranch().get(),
+            String.valueOf(parameters.getAllowPreRelease().getOrElse(false)),
+            String.valueOf(parameters.getRecreateClosedPullRequest().getOrElse(false)),
+            String.valueOf(parameters.getUseWrapperTemplates().getOrElse(false)),
+            String.valueOf(parameters.getSparseCheckout().getOrElse(false)),
+            String.join(",", parameters.getSparseCheckoutDirs().getOrElse(Collections.emptyList())),
+            String.join(" ", parameters.getGitCommitExtraArgs().getOrElse(Collections.emptyList()))));
+    }
+
+    private UpgradeMetrics.Outcome upgradeIfNeeded() throws IOException {
+        GitHubClientService gitHubClientService = getParameters().getGitHubClientService().get();
+        GitHub gitHub = gitHubClientService.gitHub();
+        if (getParameters().getRemoteVersionCheck().getOrElse(false)) {
+            Optional<String> latestVersionUsed = metrics.phase("remoteVersionCheck", () -> latestVersionUsedRemotely(getParameters(), buildToolStrategy, gitHub));
+            if (latestVersionUsed.isPresent()) {
+                usedVersion = latestVersionUsed.get();
+                return UpgradeMetrics.Outcome.UP_TO_DATE;
+            }
+        }
+        if (getParameters().getSharedCheckoutService().isPresent()) {
+            Path gitCheckoutDir = getParameters().getCheckoutDir().get().getAsFile().toPath();
+            try (SharedCheckoutService.Lease lease = getParameters().getSharedCheckoutService().get().acquire(gitCheckoutDir)) {
+                return upgrade(gitHub, gitHubClientService, Optional.of(lease));
+            }
+        }
+        return upgrade(gitHub, gitHubClientService, Optional.empty());
+    }
+
+    private UpgradeMetrics.Outcome upgrade(GitHub gitHub, GitHubClientService gitHubClientService, Optional<SharedCheckoutService.Lease> sharedCheckout) throws IOException {
+        Params params = Params.create(getParameters(), buildToolStrategy, gitHub, execOperations, metrics, sharedCheckout);
+        usedVersion = params.usedBuildToolVersion.version;
+        try (GitWorkingCopy ignored = params.git) {
+            return upgrade(params, gitHubClientService);
+        }
+    }
+
+    private UpgradeMetrics.Outcome upgrade(Params params, GitHubClientService gitHubClientService) throws IOException {
+        GitHubRepositoryClient client = createGitHubRepositoryClient(gitHubClientService, params);
+        if (metrics.phase("pullRequestQueries", client::branchExists)) {
+            LOGGER.lifecycle(String.format("GitHub branch '%s' to upgrade %s Wrapper to %s already exists for project '%s'",
+                params.prBranch, buildToolStrategy.buildToolName(), params.latestBuildToolVersion.version, params.project));
+            return UpgradeMetrics.Outcome.BRANCH_EXISTS;
+        }
+        if (!params.recreateClosedPRs && metrics.phase("pullRequestQueries", client::closedPullRequestExists)) {
+            LOGGER.lifecycle(String.format("A closed pull request from branch '%s' to upgrade %s Wrapper to %s already exists for project '%s'. Use `recreateClosedPullRequest` option to recreate it.",
+                params.prBranch, buildToolStrategy.buildToolName(), params.latestBuildToolVersion.version, params.project));
+            return UpgradeMetrics.Outcome.CLOSED_PULL_REQUEST_EXISTS;
+        }
+        Set<PullRequestInfo> pullRequestsToClose = metrics.phase("pullRequestQueries", () ->
+            new PullRequestUtils(client.openPullRequests()).pullRequestsToClose(params.project, buildToolStrategy.buildToolName(), params.latestBuildToolVersion.version));
+        return createPrIfWrapperUpgradeAvailable(params, client, pullRequestsToClose);
+    }
+
+    /**
+     * Reads the wrapper properties of the base branch through the GitHub contents API, so that projects already on the latest version
+     * are neither cloned nor have their wrapper run. Returns the used version if it is the latest one, and nothing otherwise
+     * or on any failure, which falls back to the regular upgrade.
+     */
+    static Optional<String> latestVersionUsedRemotely(Parameters parameters, BuildToolStrategy buildToolStrategy, GitHub gitHub) {
+        String project = parameters.getProject().get();
+        Optional<String> repositoryName = gitHubRepositoryName(parameters.getRepo().get());
+        if (!repositoryName.isPresent()) {
+            return Optional.empty();
+        }
+        String path = Paths.get(parameters.getDir().get()).resolve(buildToolStrategy.wrapperPropertiesFile()).normalize().toString().replace('\\', '/');
+        try (InputStream is = gitHub.getRepository(repositoryName.get()).getFileContent(path, parameters.getBaseBranch().get()).read()) {
+            Properties wrapperProperties = new Properties();
+            wrapperProperties.load(is);
+            VersionInfo usedBuildToolVersion = buildToolStrategy.extractCurrentVersion(wrapperProperties);
+            VersionInfo latestBuildToolVersion = parameters.getVersionMetadataService().get().lookupLatestVersion(buildToolStrategy, parameters.getAllowPreRelease().getOrElse(false));
+            if (VersionNumber.parse(usedBuildToolVersion.version).compareTo(VersionNumber.parse(latestBuildToolVersion.version)) >= 0) {
+                LOGGER.lifecycle(String.format("No pull request created to upgrade %s Wrapper to %s since already on latest version for project '%s'",
+                    buildToolStrategy.buildToolName(), usedBuildToolVersion.version, project));
+                return Optional.of(usedBuildToolVersion.version);
+            }
+            return Optional.empty();
+        } catch (IOException | IllegalStateException e) {
+            LOGGER.info(String.format("Could not check the %s Wrapper version remotely for project '%s', cloning it instead: %s",
+                buildToolStrategy.buildToolName(), project, e.getMessage()));
+            return Optional.empty();
+        }
+    }
+
+    static Optional<String> gitHubRepositoryName(String repository) {
+        if (!isUrl(repository)) {
+            return Optional.of(repository);
+        }
+        Matcher matcher = GITHUB_URL.matcher(repository);
+        return matcher.matches() ? Optional.of(matcher.group(1)) : Optional.empty();
+    }
+
+    private GitHubRepositoryClient createGitHubRepositoryClient(GitHubClientService gitHubClientService, Params params) throws IOException {
+        List<String> users = new ArrayList<>(params.reviewers);
+        params.assignees.stream().filter(user -> !users.contains(user)).forEach(users::add);
+        return GitHubRepositoryClient.create(gitHubClientService, params.gitHub, params.project, params.repository, params.prBranch,
+            branchPrefix(params.project, buildToolStrategy.buildToolName().toLowerCase()), params.labels, users);
+    }
+
+    private UpgradeMetrics.Outcome createPrIfWrapperUpgradeAvailable(Params params, GitHubRepositoryClient client, Set<PullRequestInfo> prsToClose) throws IOException {
+        metrics.phase("wrapper", () -> runWrapperWithLatestBuildToolVersion(params));
+        return createPrIfWrapperChanged(params, client, prsToClose);
+    }
+
+    private void runWrapperWithLatestBuildToolVersion(Params params) throws IOException {
+        if (params.wrapperTemplateCache.isPresent()) {
+            HttpTransport transport = getParameters().getVersionMetadataService().get().transport();
+            buildToolStrategy.writeWrapperFiles(execOperations, transport, params.wrapperTemplateCache.get(), params.rootProjectDir, params.latestBuildToolVersion);
+        } else {
+            buildToolStrategy.runWrapper(execOperations, params.rootProjectDir, params.latestBuildToolVersion);
+            buildToolStrategy.runWrapper(execOperations, params.rootProjectDir, params.latestBuildToolVersion);
+        }
+    }
+
+    private UpgradeMetrics.Outcome createPrIfWrapperChanged(Params params, GitHubRepositoryClient client, Set<PullRequestInfo> prsToClose) throws IOException {
+        if (metrics.phase("diff", params.git::hasChanges)) {
+            createPr(params, client);
+            metrics.phase("closePullRequests", () -> closePullRequests(params, client, prsToClose));
+            return isDryRun() ? UpgradeMetrics.Outcome.DRY_RUN : UpgradeMetrics.Outcome.PULL_REQUEST_CREATED;
+        } else {
+            LOGGER.lifecycle(String.format("No pull request created to upgrade %s Wrapper to %s since already on latest version for project '%s'",
+                buildToolStrategy.buildToolName(), params.latestBuildToolVersion.version, params.project));
+            return UpgradeMetrics.Outcome.UP_TO_DATE;
+        }
+    }
+
+    private void createPr(Params params, GitHubRepositoryClient client) throws IOException {
+        String shortDesc = createShortDescription(params);
+        String longDesc = createLongDescription(params);
+        metrics.phase("commitAndPush", () -> gitCommitAndPush(params, longDesc));
+        metrics.phase("createPullRequest", () -> gitCreatePr(params, client, shortDesc, longDesc));
+    }
+
+    private String createShortDescription(Params params) {
+        String buildToolName = buildToolStrategy.buildToolName();
+        String latestBuildToolVersion = params.latestBuildToolVersion.version;
+        String usedBuildToolVersion = params.usedBuildToolVersion.version;
+        String relativePath = params.rootProjectDirRelativePath.normalize().toString();
+
+        String title = latestBuildToolVersion.equals(usedBuildToolVersion) ?
+            String.format("Update %s Wrapper version %s files", buildToolName, latestBuildToolVersion) :
+            String.format("Bump %s Wrapper from %s to %s", buildToolName, usedBuildToolVersion, latestBuildToolVersion);
+
+        StringBuilder description = new StringBuilder();
+        description.append(title);
+        if (!relativePath.isEmpty()) {
+            String path = relativePath.startsWith("/") ? relativePath : "/" + relativePath;
+            description.append(String.format(" in %s", path));
+        }
+        return description.toString();
+    }
+
+    private String createLongDescription(Params params) {
+        String buildToolName = buildToolStrategy.buildToolName();
+        String latestBuildToolVersion = params.latestBuildToolVersion.version;
+        String usedBuildToolVersion = params.usedBuildToolVersion.version;
+        String releaseNotesLink = buildToolStrategy.releaseNotesLink(latestBuildToolVersion);
+
+        boolean updatedWrapperFilesOnly = latestBuildToolVersion.equals(usedBuildToolVersion);
+        String title = updatedWrapperFilesOnly ?
+            String.format("Update %s Wrapper version %s files.", buildToolName, latestBuildToolVersion) :
+            String.format("Bump %s Wrapper from %s to %s.", buildToolName, usedBuildToolVersion, latestBuildToolVersion);
+
+        String releaseNotes = updatedWrapperFilesOnly ? "" :
+            "\n\n" +
+                String.format("Release notes of %s %s can be found here:", buildToolName, latestBuildToolVersion) +
+                "\n" +
+                releaseNotesLink;
+
+        return title + releaseNotes;
+    }
+
+    private void gitCommitAndPush(Params params, String commitMessage) throws IOException {
+        // Git add
+        params.git.add(buildToolStrategy.wrapperFiles(params.rootProjectDir));
+
+        // Git checkout
+        params.git.checkoutBranch(params.prBranch);
+
+        // Git commit
+        params.git.commit(commitMessage, params.gitCommitExtraArgs);
+
+        // Git push
+        if (!isDryRun()) {
+            params.git.push(params.prBranch);
+        }
+    }
+
+    private void gitCreatePr(Params params, GitHubRepositoryClient client, String prTitle, String prBody) throws IOException {
+        if (!isDryRun()) {
+            PullRequestInfo pr = client.createPullRequest(prTitle, params.baseBranch, prBody);
+            LOGGER.lifecycle(String.format("Pull request '%s' created at %s to upgrade %s Wrapper to %s for project '%s'",
+                params.prBranch, pr.htmlUrl, buildToolStrategy.buildToolName(), params.latestBuildToolVersion.version, params.project));
+            client.decoratePullRequest(pr, params.labels, params.reviewers, params.assignees);
+        } else {
+            LOGGER.lifecycle(String.format("Dry run: Skipping creation of pull request '%s' that would upgrade %s Wrapper to %s for project '%s'",
+                params.prBranch, buildToolStrategy.buildToolName(), params.latestBuildToolVersion.version, params.project));
+        }
+    }
+
+    private void closePullRequests(Params params, GitHubRepositoryClient client, Set<PullRequestInfo> prs) {
+        for (PullRequestInfo pr : prs) {
+            if (!isDryRun()) {
+                LOGGER.lifecycle(String.format("Pull request #%s on project '%s' has been closed because target %s Wrapper version is older than %s",
+                    pr.number, params.project, buildToolStrategy.buildToolName(), params.latestBuildToolVersion.version));
+            } else {
+                LOGGER.lifecycle(String.format("Dry run: Skipping closure of pull request #%s on project '%s' because target %s Wrapper version is older than %s",
+                    pr.number, params.project, buildToolStrategy.buildToolName(), params.latestBuildToolVersion.version));
+            }
+        }
+        if (!isDryRun()) {
+            client.closePullRequests(prs);
+        }
+    }
+
+    private boolean isDryRun() {
+        return getParameters().getDryRun().getOrElse(false);
+    }
+
+    private static boolean isUrl(String url) {
+        try {
+            new URL(url);
+            return true;
+        } catch (MalformedURLException e) {
+            return false;
+        }
+    }
+
+    private static final class Params {
+
+        private final String project;
+        private final String repository;
+        private final String baseBranch;
+        private final String prBranch;
+        private final Path gitCheckoutDir;
+        private final Path rootProjectDir;
+        private final Path rootProjectDirRelativePath;
+        private final VersionInfo latestBuildToolVersion;
+        private final VersionInfo usedBuildToolVersion;
+        private final List<String> gitCommitExtraArgs;
+        private final boolean recreateClosedPRs;
+        private final List<String> labels;
+        private final List<String> assignees;
+        private final List<String> reviewers;
+        private final Optional<WrapperTemplateCache> wrapperTemplateCache;
+        private final GitHub gitHub;
+        private final GitWorkingCopy git;
+
+        private Params(
+            String project,
+            String repository,
+            String baseBranch,
+            String prBranch,
+            Path gitCheckoutDir,
+            Path rootProjectDir,
+            Path rootProjectDirRelativePath,
+            VersionInfo latestBuildToolVersion,
+            VersionInfo usedBuildToolVersion,
+            List<String> gitCommitExtraArgs,
+            boolean recreateClosedPRs,
+            List<String> labels,
+            List<String> assignees,
+            List<String> reviewers,
+            Optional<WrapperTemplateCache> wrapperTemplateCache,
+            GitHub gitHub,
+            GitWorkingCopy git
+        ) {
+            this.project = project;
+            this.repository = repository;
+            this.baseBranch = baseBranch;
+            this.prBranch = prBranch;
+            this.gitCheckoutDir = gitCheckoutDir;
+            this.rootProjectDir = rootProjectDir;
+            this.rootProjectDirRelativePath = rootProjectDirRelativePath;
+            this.latestBuildToolVersion = latestBuildToolVersion;
+            this.usedBuildToolVersion = usedBuildToolVersion;
+            this.gitCommitExtraArgs = gitCommitExtraArgs;
+            this.recreateClosedPRs = recreateClosedPRs;
+            this.labels = labels;
+            this.assignees = assignees;
+            this.reviewers = reviewers;
+            this.wrapperTemplateCache = wrapperTemplateCache;
+            this.gitHub = gitHub;
+            this.git = git;
+        }
+
+        private static Params create
+            (
+                Parameters parameters,
+                BuildToolStrategy buildToolStrategy,
+                GitHub gitHub,
+                ExecOperations exec,
+                UpgradeMetrics metrics,
+                Optional<SharedCheckoutService.Lease> sharedCheckout
+            ) throws IOException {
+            String project = parameters.getProject().get();
+            String repository = parameters.getRepo().get();
+            String baseBranch = parameters.getBaseBranch().get();
+            boolean allowPreRelease = parameters.getAllowPreRelease().getOrElse(false);
+            Path executionRootDir = parameters.getExecutionRootDir().get().getAsFile().toPath();
+            Path gitCheckoutDir = parameters.getCheckoutDir().get().getAsFile().toPath();
+            Path rootProjectDir = gitCheckoutDir.resolve(parameters.getDir().get());
+
+            List<String> sparseCheckoutPaths = Collections.emptyList();
+            if (parameters.getSparseCheckout().getOrElse(false)) {
+                List<String> sparseCheckoutDirs = new ArrayList<>(buildToolStrategy.sparseCheckoutDirs());
+                sparseCheckoutDirs.addAll(parameters.getSparseCheckoutDirs().get());
+                sparseCheckoutPaths = GitCloneUtils.sparseCheckoutPaths(parameters.getDir().get(), sparseCheckoutDirs);
+            }
+            Optional<String> remoteCommitRepository = remoteCommitRepository(parameters, project, repository);
+            GitDataApiWorkingCopy remoteWorkingCopy = null;
+            if (remoteCommitRepository.isPresent()) {
+                WrapperTemplateCache.deleteRecursively(gitCheckoutDir);
+                List<String> wrapperPaths = buildToolStrategy.wrapperFiles(rootProjectDir).stream()
+                    .map(p -> gitCheckoutDir.relativize(p.normalize()).toString().replace('\\', '/'))
+                    .collect(Collectors.toList());
+                remoteWorkingCopy = metrics.phase("clone", () ->
+                    GitDataApiWorkingCopy.checkout(gitHub.getRepository(remoteCommitRepository.get()), baseBranch, gitCheckoutDir, wrapperPaths));
+                metrics.increment(UpgradeMetrics.BYTES_CLONED, remoteWorkingCopy.downloadedBytes());
+            } else if (sharedCheckout.isPresent() && sharedCheckout.get().isCheckedOut()) {
+                List<String> checkoutPaths = sparseCheckoutPaths;
+                metrics.phase("clone", () -> GitCloneUtils.resetToBaseBranch(exec, baseBranch, gitCheckoutDir, checkoutPaths));
+            } else {
+                List<String> checkoutPaths = sparseCheckoutPaths;
+                if (sharedCheckout.isPresent()) {
+                    // The shared working copy is not an output of the upgrade tasks, hence is not deleted by Gradle before the first use of the build
+                    WrapperTemplateCache.deleteRecursively(gitCheckoutDir);
+                }
+                long bytesCloned = metrics.phase("clone", () -> {
+                    if (parameters.getGitRepositoryCacheDir().isPresent()) {
+                        Path repositoryCacheDir = parameters.getGitRepositoryCacheDir().get().getAsFile().toPath();
+                        return GitCloneUtils.checkoutFromRepositoryCache(exec, gitUrl(repository), baseBranch, repositoryCacheDir, gitCheckoutDir, checkoutPaths);
+                    } else {
+                        return GitCloneUtils.cloneGitProject(exec, gitUrl(repository), baseBranch, executionRootDir, gitCheckoutDir, checkoutPaths);
+                    }
+                });
+                metrics.increment(UpgradeMetrics.BYTES_CLONED, bytesCloned);
+                sharedCheckout.ifPresent(SharedCheckoutService.Lease::checkedOut);
+            }
+            VersionInfo usedBuildToolVersion = metrics.phase("extractCurrentVersion", () -> buildToolStrategy.extractCurrentVersion(rootProjectDir));
+            Optional<WrapperHomeService> wrapperHome = Optional.ofNullable(parameters.getWrapperHomeService().getOrNull());
+            if (wrapperHome.isPresent()) {
+                Properties wrapperProperties = WrapperHomeService.readProperties(rootProjectDir.resolve(buildToolStrategy.wrapperPropertiesFile()));
+                wrapperHome.get().distributionUsed(buildToolStrategy, usedBuildToolVersion.version, Optional.of(wrapperProperties));
+            }
+            VersionInfo latestBuildToolVersion = metrics.phase("latestVersion", () -> getLatestBuildToolVersion(parameters.getVersionMetadataService().get(), buildToolStrategy, allowPreRelease, usedBuildToolVersion));
+            wrapperHome.ifPresent(h -> h.distributionUsed(buildToolStrategy, latestBuildToolVersion.version, Optional.empty()));
+
+            String prBranch = PullRequestUtils.branchPrefix(project, buildToolStrategy.buildToolName().toLowerCase()) + latestBuildToolVersion.version;
+            Path rootProjectDirRelativePath = gitCheckoutDir.relativize(rootProjectDir);
+            // Without a clone, the build of the project cannot run the wrapper, hence the wrapper templates are always used
+            Optional<WrapperTemplateCache> wrapperTemplateCache = parameters.getUseWrapperTemplates().getOrElse(false) || remoteWorkingCopy != null
+                ? Optional.of(new WrapperTemplateCache(parameters.getWrapperTemplateCacheDir().get().getAsFile().toPath()))
+                : Optional.empty();
+            GitWorkingCopy git = remoteWorkingCopy != null ? remoteWorkingCopy
+                : GitWorkingCopy.create(exec, gitCheckoutDir, useEmbeddedGit(parameters, project, repository, sparseCheckoutPaths));
+            configureGitProject(git, parameters.getUnsignedCommits().getOrElse(false));
+            return new Params(project, repository, baseBranch, prBranch, gitCheckoutDir, rootProjectDir, rootProjectDirRelativePath, latestBuildToolVersion, usedBuildToolVersion,
+                parameters.getGitCommitExtraArgs().get(), parameters.getRecreateClosedPullRequest().getOrElse(false),
+                parameters.getLabels().get(), parameters.getAssignees().get(), parameters.getReviewers().get(), wrapperTemplateCache, gitHub, git);
+        }
+
+        private static Optional<String> remoteCommitRepository(Parameters parameters, String project, String repository) {
+            if (!parameters.getRemoteCommit().getOrElse(false)) {
+                return Optional.empty();
+            }
+            Optional<String> repositoryName = gitHubRepositoryName(repository);
+            if (!repositoryName.isPresent()) {
+                LOGGER.warn(String.format("Committing through the GitHub API is only supported for GitHub repositories, cloning project '%s' instead", project));
+            }
+            return repositoryName;
+        }
+
+        /**
+         * The embedded Git engine supports neither sparse checkouts nor Git worktrees, and only pushes over HTTP(S).
+         */
+        private static boolean useEmbeddedGit(Parameters parameters, String project, String repository, List<String> sparseCheckoutPaths) {
+            if (!parameters.getEmbeddedGit().getOrElse(false)) {
+                return false;
+            }
+            if (!sparseCheckoutPaths.isEmpty() || parameters.getGitRepositoryCacheDir().isPresent() || !gitUrl(repository).matches("(?i)https?://.*")) {
+                LOGGER.warn(String.format("The embedded Git engine does not support sparse checkouts, cached Git repositories and non-HTTP(S) repository URLs, using the Git CLI for project '%s'", project));
+                return false;
+            }
+            return true;
+        }
+
+        private static VersionInfo getLatestBuildToolVersion(VersionMetadataService versionMetadataService, BuildToolStrategy buildToolStrategy, boolean allowPreRelease, VersionInfo usedBuildToolVersion) throws IOException {
+            VersionInfo latestBuildToolVersion = versionMetadataService.lookupLatestVersion(buildToolStrategy, allowPreRelease);
+            if (VersionNumber.parse(usedBuildToolVersion.version)
+                .compareTo(VersionNumber.parse(latestBuildToolVersion.version)) >= 0) {
+                return usedBuildToolVersion;
+            } else {
+                return latestBuildToolVersion;
+            }
+        }
+
+        private static void configureGitProject(GitWorkingCopy git, boolean unsignedCommits) throws IOException {
+            if (unsignedCommits) {
+                git.disableCommitSigning();
+            }
+        }
+
+        private static String gitUrl(String repository) {
+            return isUrl(repository) ? repository : "https://github.com/" + repository + ".git";
+        }
+
+    }
+
+}
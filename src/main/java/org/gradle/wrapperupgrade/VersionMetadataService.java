@@ -0,0 +1,123 @@
+package org.gradle.wrapperupgrade;
+
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.wrapperupgrade.BuildToolStrategy.VersionInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resolves the latest version of a build tool once per build and shares it between all upgrade tasks.
+ */
+public abstract class VersionMetadataService implements BuildService<VersionMetadataService.Params>, AutoCloseable {
+
+    public interface Params extends BuildServiceParameters {
+
+        DirectoryProperty getCacheDir();
+
+        Property<Duration> getCacheTtl();
+
+        DirectoryProperty getHttpCacheDir();
+
+        Property<String> getGradleVersionsUrl();
+
+        Property<String> getMavenRepositoryUrl();
+
+    }
+
+    private static final Logger LOGGER = Logging.getLogger(VersionMetadataService.class);
+
+    private final ConcurrentMap<String, VersionInfo> latestVersions = new ConcurrentHashMap<>();
+    private OkHttpTransport transport;
+    private FileChannel httpCacheLockChannel;
+
+    public VersionInfo lookupLatestVersion(BuildToolStrategy buildToolStrategy, boolean allowPreRelease) throws IOException {
+        String key = buildToolStrategy.buildToolName().toLowerCase() + (allowPreRelease ? "-pre-release" : "-release");
+        try {
+            return latestVersions.computeIfAbsent(key, k -> {
+                try {
+                    return lookupLatestVersion(k, buildToolStrategy, allowPreRelease);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private VersionInfo lookupLatestVersion(String key, BuildToolStrategy buildToolStrategy, boolean allowPreRelease) throws IOException {
+        Optional<LatestVersionCache> cache = latestVersionCache();
+        String metadataBaseUrl = metadataBaseUrl(buildToolStrategy);
+        // The cached version is only reused for the same source of versions, as a mirror can lag behind or serve other checksums
+        String cacheKey = key + "-" + GitCloneUtils.sha256(metadataBaseUrl).substring(0, 16);
+        Optional<VersionInfo> cachedVersion = cache.flatMap(c -> c.read(cacheKey));
+        if (cachedVersion.isPresent()) {
+            return cachedVersion.get();
+        }
+
+        VersionInfo latestVersion = buildToolStrategy.lookupLatestVersion(transport(), metadataBaseUrl, allowPreRelease);
+        if (cache.isPresent()) {
+            try {
+                cache.get().write(cacheKey, latestVersion);
+            } catch (IOException e) {
+                LOGGER.warn(String.format("Error caching latest %s version", buildToolStrategy.buildToolName()), e);
+            }
+        }
+        return latestVersion;
+    }
+
+    private String metadataBaseUrl(BuildToolStrategy buildToolStrategy) {
+        Property<String> url = buildToolStrategy == BuildToolStrategy.GRADLE ? getParameters().getGradleVersionsUrl() : getParameters().getMavenRepositoryUrl();
+        String baseUrl = url.getOrElse(buildToolStrategy.defaultMetadataBaseUrl());
+        return baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    /**
+     * Returns the transport of the version lookups, with its timeouts and retries, to download other build tool metadata.
+     */
+    synchronized HttpTransport transport() throws IOException {
+        if (transport == null) {
+            File httpCacheDir = null;
+            if (getParameters().getHttpCacheDir().isPresent()) {
+                // The response cache does not support concurrent access from several processes
+                Path cacheDir = getParameters().getHttpCacheDir().get().getAsFile().toPath();
+                httpCacheLockChannel = FileLockUtils.tryLockForBuild(cacheDir.resolveSibling(cacheDir.getFileName() + ".lock")).orElse(null);
+                httpCacheDir = httpCacheLockChannel != null ? cacheDir.toFile() : null;
+            }
+            transport = new OkHttpTransport(httpCacheDir);
+        }
+        return transport;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (transport != null) {
+            transport.close();
+        }
+        if (httpCacheLockChannel != null) {
+            httpCacheLockChannel.close();
+        }
+    }
+
+    private Optional<LatestVersionCache> latestVersionCache() {
+        Params params = getParameters();
+        if (!params.getCacheTtl().isPresent() || params.getCacheTtl().get().isZero() || !params.getCacheDir().isPresent()) {
+            return Optional.empty();
+        }
+        return Optional.of(new LatestVersionCache(params.getCacheDir().get().getAsFile().toPath(), params.getCacheTtl().get()));
+    }
+
+}
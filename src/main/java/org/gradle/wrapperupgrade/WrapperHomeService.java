@@ -0,0 +1,298 @@
+package org.gradle.wrapperupgrade;
+
+import org.gradle.api.Action;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.process.ExecOperations;
+import org.gradle.process.ExecResult;
+import org.gradle.process.ExecSpec;
+import org.gradle.process.JavaExecSpec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Shares a Gradle user home and a Maven user home between the wrapper runs of all projects, so that each distribution
+ * and the Maven Wrapper plugin are downloaded once rather than once per project. Distributions can be prefetched as soon
+ * as the current version of a project is known, and the least recently used distributions are evicted at the end of the build
+ * when the shared homes exceed their maximum size.
+ */
+public abstract class WrapperHomeService implements BuildService<WrapperHomeService.Params>, AutoCloseable {
+
+    public interface Params extends BuildServiceParameters {
+
+        /**
+         * The directory of the shared homes. Nothing is shared if not set.
+         */
+        DirectoryProperty getHomeDir();
+
+        Property<Long> getMaxSize();
+
+        Property<Boolean> getPrefetchDistributions();
+
+        /**
+         * The Gradle user home of the build, whose `gradle.properties` file applies to the wrapper runs.
+         */
+        DirectoryProperty getGradleUserHome();
+
+    }
+
+    private static final Logger LOGGER = Logging.getLogger(WrapperHomeService.class);
+
+    private final Map<String, CompletableFuture<Void>> prefetches = new ConcurrentHashMap<>();
+    private final Set<Path> usedDistributions = ConcurrentHashMap.newKeySet();
+    private ExecutorService prefetchExecutor;
+    private OkHttpTransport transport;
+    private FileChannel homeLockChannel;
+    private boolean homesInUse;
+
+    boolean isEnabled() {
+        return getParameters().getHomeDir().isPresent();
+    }
+
+    private Path homeDir() {
+        return getParameters().getHomeDir().get().getAsFile().toPath();
+    }
+
+    private Path gradleUserHome() {
+        return homeDir().resolve("gradle");
+    }
+
+    private Path mavenUserHome() {
+        return homeDir().resolve("maven");
+    }
+
+    /**
+     * Runs the Gradle and Maven wrappers spawned through the returned exec operations with the shared homes.
+     */
+    ExecOperations execOperations(ExecOperations delegate) {
+        if (!isEnabled()) {
+            return delegate;
+        }
+        useHomes();
+        return new ExecOperations() {
+            @Override
+            public ExecResult exec(Action<? super ExecSpec> action) {
+                return delegate.exec(spec -> {
+                    action.execute(spec);
+                    if ("./gradlew".equals(spec.getExecutable())) {
+                        spec.environment("GRADLE_USER_HOME", gradleUserHome().toString());
+                    } else if ("./mvnw".equals(spec.getExecutable())) {
+                        spec.environment("MAVEN_USER_HOME", mavenUserHome().toString());
+                        String mavenOpts = Optional.ofNullable(System.getenv("MAVEN_OPTS")).map(opts -> opts + " ").orElse("");
+                        spec.environment("MAVEN_OPTS", mavenOpts + "-Dmaven.repo.local=" + mavenUserHome().resolve("repository"));
+                    }
+                });
+            }
+
+            @Override
+            public ExecResult javaexec(Action<? super JavaExecSpec> action) {
+                return delegate.javaexec(action);
+            }
+        };
+    }
+
+    /**
+     * Copies the `gradle.properties` file of the Gradle user home of this build into the shared Gradle user home once per build,
+     * so that the wrapper runs keep their proxy and credentials settings, and marks the shared homes as in use by this build.
+     */
+    private synchronized void useHomes() {
+        if (homesInUse) {
+            return;
+        }
+        homesInUse = true;
+        try {
+            homeLockChannel = FileLockUtils.lockSharedForBuild(homeLockFile()).orElse(null);
+            Files.createDirectories(gradleUserHome());
+            if (getParameters().getGradleUserHome().isPresent()) {
+                Path userGradleProperties = getParameters().getGradleUserHome().get().getAsFile().toPath().resolve("gradle.properties");
+                if (Files.isRegularFile(userGradleProperties)) {
+                    Path tempFile = Files.createTempFile(gradleUserHome(), "gradle", ".properties");
+                    Files.copy(userGradleProperties, tempFile, StandardCopyOption.REPLACE_EXISTING);
+                    Files.move(tempFile, gradleUserHome().resolve("gradle.properties"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path homeLockFile() {
+        return homeDir().resolveSibling(homeDir().getFileName() + ".lock");
+    }
+
+    /**
+     * Records that the projects use the distribution of the given version, and starts downloading the Gradle distribution
+     * of the given wrapper properties into the shared Gradle user home if prefetching is enabled.
+     */
+    void distributionUsed(BuildToolStrategy buildToolStrategy, String version, Optional<Properties> wrapperProperties) {
+        if (!isEnabled()) {
+            return;
+        }
+        String prefix = buildToolStrategy == BuildToolStrategy.GRADLE ? "gradle-" : "apache-maven-";
+        Path home = buildToolStrategy == BuildToolStrategy.GRADLE ? gradleUserHome() : mavenUserHome();
+        usedDistributions.add(home.resolve("wrapper").resolve("dists").resolve(prefix + version));
+        if (buildToolStrategy == BuildToolStrategy.GRADLE && getParameters().getPrefetchDistributions().getOrElse(false) && wrapperProperties.isPresent()) {
+            prefetch(wrapperProperties.get());
+        }
+    }
+
+    private void prefetch(Properties wrapperProperties) {
+        String distributionUrl = wrapperProperties.getProperty("distributionUrl");
+        // The distribution is only found by the wrapper if installed at the default location
+        boolean defaultLocation = "GRADLE_USER_HOME".equals(wrapperProperties.getProperty("distributionBase", "GRADLE_USER_HOME"))
+            && "wrapper/dists".equals(wrapperProperties.getProperty("distributionPath", "wrapper/dists"));
+        if (distributionUrl == null || !defaultLocation) {
+            return;
+        }
+        String sha256Sum = wrapperProperties.getProperty("distributionSha256Sum");
+        prefetches.computeIfAbsent(distributionUrl, url -> CompletableFuture.runAsync(() -> {
+            try {
+                if (GradleDistributionInstaller.install(transport(), gradleUserHome(), url, sha256Sum)) {
+                    LOGGER.info("Prefetched Gradle distribution {}", url);
+                }
+            } catch (IOException | RuntimeException e) {
+                // The wrapper downloads the distribution itself then
+                LOGGER.info(String.format("Could not prefetch Gradle distribution %s: %s", url, e.getMessage()));
+            }
+        }, prefetchExecutor()));
+    }
+
+    private synchronized ExecutorService prefetchExecutor() {
+        if (prefetchExecutor == null) {
+            prefetchExecutor = Executors.newFixedThreadPool(2, runnable -> {
+                Thread thread = new Thread(runnable, "wrapper-distribution-prefetch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return prefetchExecutor;
+    }
+
+    private synchronized HttpTransport transport() {
+        if (transport == null) {
+            transport = new OkHttpTransport(null);
+        }
+        return transport;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdownNow();
+        }
+        if (transport != null) {
+            transport.close();
+        }
+        if (homeLockChannel != null) {
+            homeLockChannel.close();
+        }
+        if (isEnabled() && getParameters().getMaxSize().isPresent()) {
+            evict(getParameters().getMaxSize().get());
+        }
+    }
+
+    /**
+     * Deletes the least recently used distributions until the shared homes fit in the given size,
+     * unless another build is using them.
+     */
+    private void evict(long maxSize) throws IOException {
+        Path homeDir = homeDir();
+        if (!Files.isDirectory(homeDir)) {
+            return;
+        }
+        Optional<FileChannel> lock = FileLockUtils.tryLockForBuild(homeLockFile());
+        if (!lock.isPresent()) {
+            LOGGER.info("Shared wrapper homes in use by another build, skipping eviction");
+            return;
+        }
+        try (FileChannel ignored = lock.get()) {
+            FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+            List<Path> distributions = new ArrayList<>();
+            for (Path home : new Path[]{gradleUserHome(), mavenUserHome()}) {
+                Path distsDir = home.resolve("wrapper").resolve("dists");
+                if (Files.isDirectory(distsDir)) {
+                    try (Stream<Path> dists = Files.list(distsDir)) {
+                        distributions.addAll(dists.filter(Files::isDirectory).collect(Collectors.toList()));
+                    }
+                }
+            }
+            Set<Path> used = new HashSet<>();
+            for (Path distribution : distributions) {
+                if (usedDistributions.stream().anyMatch(prefix -> isDistributionOf(distribution, prefix))) {
+                    Files.setLastModifiedTime(distribution, now);
+                    used.add(distribution);
+                }
+            }
+            distributions.sort(Comparator.comparing(WrapperHomeService::lastModifiedTime));
+            long size = directorySize(homeDir);
+            for (Path distribution : distributions) {
+                if (size <= maxSize) {
+                    break;
+                }
+                if (!used.contains(distribution)) {
+                    long distributionSize = directorySize(distribution);
+                    WrapperTemplateCache.deleteRecursively(distribution);
+                    size -= distributionSize;
+                    LOGGER.info("Evicted wrapper distribution {}", distribution.getFileName());
+                }
+            }
+        }
+    }
+
+    /**
+     * The Gradle distributions are named `gradle-<version>-<type>`, the Maven distributions `apache-maven-<version>-bin` or `apache-maven-<version>`.
+     */
+    private static boolean isDistributionOf(Path distribution, Path versionPrefix) {
+        String name = distribution.getFileName().toString();
+        String prefix = versionPrefix.getFileName().toString();
+        return distribution.getParent().equals(versionPrefix.getParent()) && (name.equals(prefix) || name.startsWith(prefix + "-"));
+    }
+
+    private static FileTime lastModifiedTime(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static long directorySize(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    static Properties readProperties(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(file)) {
+            properties.load(is);
+        }
+        return properties;
+    }
+
+}
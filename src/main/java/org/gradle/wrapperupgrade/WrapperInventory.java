@@ -0,0 +1,258 @@
+package org.gradle.wrapperupgrade;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Discovers the Gradle and Maven wrappers of the repositories of a GitHub organization. The wrappers of each repository
+ * are detected from the recursive tree of its default branch, and kept in an on-disk index with the `pushed_at` date of the repository,
+ * so that only the repositories pushed since the previous discovery have their tree fetched again.
+ */
+final class WrapperInventory {
+
+    private static final Logger LOGGER = Logging.getLogger(WrapperInventory.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String GRADLE_WRAPPER_PROPERTIES = "gradle/wrapper/gradle-wrapper.properties";
+    private static final String MAVEN_WRAPPER_PROPERTIES = ".mvn/wrapper/maven-wrapper.properties";
+    private static final Pattern NEXT_LINK = Pattern.compile("<([^>]+)>;\\s*rel=\"next\"");
+
+    private final OkHttpClient httpClient;
+    private final String apiUrl;
+    @Nullable
+    private final String token;
+    private final Path indexDir;
+
+    WrapperInventory(OkHttpClient httpClient, String apiUrl, @Nullable String token, Path indexDir) {
+        this.httpClient = httpClient;
+        this.apiUrl = apiUrl.endsWith("/") ? apiUrl.substring(0, apiUrl.length() - 1) : apiUrl;
+        this.token = token;
+        this.indexDir = indexDir;
+    }
+
+    /**
+     * Returns the wrappers of the non-archived repositories of the organization that have any of the given topics, if any,
+     * and whose name matches the given pattern, if any.
+     */
+    Discovery discover(String organization, List<String> topics, @Nullable Pattern namePattern) throws IOException {
+        Path indexFile = indexDir.resolve(HttpUrl.get(apiUrl).host()).resolve(organization.toLowerCase() + ".json");
+        ObjectNode previousIndex = readIndex(indexFile);
+        ObjectNode index = MAPPER.createObjectNode();
+        List<Wrapper> wrappers = new ArrayList<>();
+        int repositories = 0;
+        int scannedRepositories = 0;
+        try {
+            String url = apiUrl + "/orgs/" + organization + "/repos?type=all&per_page=100";
+            while (url != null) {
+                Page page = get(url);
+                for (JsonNode repository : page.body) {
+                    if (!matches(repository, topics, namePattern)) {
+                        continue;
+                    }
+                    String fullName = repository.path("full_name").asText();
+                    String defaultBranch = repository.path("default_branch").asText();
+                    String pushedAt = repository.path("pushed_at").asText();
+                    JsonNode entry = previousIndex.path(fullName);
+                    if (!pushedAt.equals(entry.path("pushedAt").asText(null)) || !defaultBranch.equals(entry.path("defaultBranch").asText(null))) {
+                        entry = scan(fullName, defaultBranch, pushedAt);
+                        scannedRepositories++;
+                    }
+                    index.set(fullName, entry);
+                    repositories++;
+                    entry.path("gradle").forEach(dir -> wrappers.add(new Wrapper(BuildToolStrategy.GRADLE, fullName, dir.asText(), defaultBranch)));
+                    entry.path("maven").forEach(dir -> wrappers.add(new Wrapper(BuildToolStrategy.MAVEN, fullName, dir.asText(), defaultBranch)));
+                }
+                url = page.next;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Keep the repositories scanned so far, so that a discovery that hits the rate limit resumes where it stopped
+            previousIndex.setAll(index);
+            writeIndex(indexFile, previousIndex);
+            throw e;
+        }
+        // Repositories that are gone or no longer match the filters are dropped from the index
+        writeIndex(indexFile, index);
+        return new Discovery(wrappers, repositories, scannedRepositories);
+    }
+
+    private static boolean matches(JsonNode repository, List<String> topics, @Nullable Pattern namePattern) {
+        if (repository.path("archived").asBoolean(false)) {
+            return false;
+        }
+        if (namePattern != null && !namePattern.matcher(repository.path("name").asText()).matches()) {
+            return false;
+        }
+        if (topics.isEmpty()) {
+            return true;
+        }
+        for (JsonNode topic : repository.path("topics")) {
+            if (topics.contains(topic.asText())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ObjectNode scan(String fullName, String defaultBranch, String pushedAt) throws IOException {
+        TreeSet<String> gradleDirs = new TreeSet<>();
+        TreeSet<String> mavenDirs = new TreeSet<>();
+        // An empty repository has no tree (409 Conflict), and a repository can be deleted while being listed (404 Not Found)
+        HttpUrl treeUrl = HttpUrl.get(apiUrl).newBuilder()
+            .addPathSegments("repos/" + fullName + "/git/trees")
+            .addPathSegments(defaultBranch)
+            .addQueryParameter("recursive", "1")
+            .build();
+        Page tree = get(treeUrl.toString(), 404, 409);
+        if (tree != null) {
+            if (tree.body.path("truncated").asBoolean(false)) {
+                LOGGER.warn("The tree of repository {} is too large to be listed completely, some of its wrappers might not be discovered", fullName);
+            }
+            for (JsonNode treeEntry : tree.body.path("tree")) {
+                if ("blob".equals(treeEntry.path("type").asText())) {
+                    String path = treeEntry.path("path").asText();
+                    addDir(path, GRADLE_WRAPPER_PROPERTIES, gradleDirs);
+                    addDir(path, MAVEN_WRAPPER_PROPERTIES, mavenDirs);
+                }
+            }
+        }
+        ObjectNode entry = MAPPER.createObjectNode()
+            .put("pushedAt", pushedAt)
+            .put("defaultBranch", defaultBranch);
+        gradleDirs.forEach(entry.putArray("gradle")::add);
+        mavenDirs.forEach(entry.putArray("maven")::add);
+        return entry;
+    }
+
+    private static void addDir(String path, String wrapperProperties, TreeSet<String> dirs) {
+        if (path.equals(wrapperProperties)) {
+            dirs.add(".");
+        } else if (path.endsWith("/" + wrapperProperties)) {
+            dirs.add(path.substring(0, path.length() - wrapperProperties.length() - 1));
+        }
+    }
+
+    @Nullable
+    private Page get(String url, int... absentCodes) throws IOException {
+        Request.Builder request = new Request.Builder()
+            .url(url)
+            .header("Accept", "application/vnd.github+json");
+        if (token != null) {
+            request.header("Authorization", "token " + token);
+        }
+        try (Response response = httpClient.newCall(request.build()).execute()) {
+            for (int absentCode : absentCodes) {
+                if (response.code() == absentCode) {
+                    return null;
+                }
+            }
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException(String.format("GitHub request %s failed with status %s %s", url, response.code(), response.message()));
+            }
+            String next = null;
+            String link = response.header("Link");
+            if (link != null) {
+                Matcher matcher = NEXT_LINK.matcher(link);
+                if (matcher.find()) {
+                    next = matcher.group(1);
+                }
+            }
+            return new Page(MAPPER.readTree(response.body().byteStream()), next);
+        }
+    }
+
+    private static ObjectNode readIndex(Path indexFile) {
+        if (Files.isRegularFile(indexFile)) {
+            try (InputStream is = Files.newInputStream(indexFile)) {
+                JsonNode index = MAPPER.readTree(is);
+                if (index.isObject()) {
+                    return (ObjectNode) index;
+                }
+            } catch (IOException e) {
+                LOGGER.info("Ignoring unreadable wrapper inventory {}: {}", indexFile, e.getMessage());
+            }
+        }
+        return MAPPER.createObjectNode();
+    }
+
+    private static void writeIndex(Path indexFile, ObjectNode index) throws IOException {
+        Files.createDirectories(indexFile.getParent());
+        Path tmpFile = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+        try (OutputStream os = Files.newOutputStream(tmpFile)) {
+            MAPPER.writeValue(os, index);
+        }
+        Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the fleet manifest line of a discovered wrapper.
+     */
+    static String manifestLine(Wrapper wrapper) {
+        return FleetManifest.line(null, wrapper.buildToolStrategy, wrapper.repo, wrapper.dir, wrapper.baseBranch, Collections.emptyMap());
+    }
+
+    private static final class Page {
+
+        final JsonNode body;
+        @Nullable
+        final String next;
+
+        Page(JsonNode body, @Nullable String next) {
+            this.body = body;
+            this.next = next;
+        }
+
+    }
+
+    static final class Discovery {
+
+        final List<Wrapper> wrappers;
+        final int repositories;
+        final int scannedRepositories;
+
+        Discovery(List<Wrapper> wrappers, int repositories, int scannedRepositories) {
+            this.wrappers = wrappers;
+            this.repositories = repositories;
+            this.scannedRepositories = scannedRepositories;
+        }
+
+    }
+
+    static final class Wrapper {
+
+        final BuildToolStrategy buildToolStrategy;
+        final String repo;
+        final String dir;
+        final String baseBranch;
+
+        Wrapper(BuildToolStrategy buildToolStrategy, String repo, String dir, String baseBranch) {
+            this.buildToolStrategy = buildToolStrategy;
+            this.repo = repo;
+            this.dir = dir;
+            this.baseBranch = baseBranch;
+        }
+
+    }
+
+}
@@ -0,0 +1,103 @@
+package org.gradle.wrapperupgrade;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Line-based handling of wrapper properties files, keeping the values as written in the file
+ * so that the formatting of the build tool generating the file is preserved.
+ */
+final class WrapperProperties {
+
+    static List<String> readLines(Path propertiesFile) throws IOException {
+        return Files.isRegularFile(propertiesFile) ? Files.readAllLines(propertiesFile, StandardCharsets.ISO_8859_1) : new ArrayList<>();
+    }
+
+    static Map<String, String> values(List<String> lines) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String line : lines) {
+            String key = key(line);
+            if (key != null) {
+                values.put(key, line.substring(line.indexOf('=') + 1));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Merges the properties generated by the build tool with the existing properties of the project: the generated keys are taken
+     * from the overrides (removed if null) or else from the template, while all other keys keep their existing value.
+     */
+    static List<String> merge(List<String> templateLines, Map<String, String> existingValues, Set<String> generatedKeys, Map<String, String> overrides) {
+        List<String> lines = new ArrayList<>();
+        Map<String, String> remainingValues = new LinkedHashMap<>(existingValues);
+        generatedKeys.forEach(remainingValues::remove);
+        for (String line : templateLines) {
+            String key = key(line);
+            if (key == null) {
+                lines.add(line);
+            } else if (overrides.containsKey(key)) {
+                if (overrides.get(key) != null) {
+                    lines.add(key + "=" + overrides.get(key));
+                }
+            } else if (remainingValues.containsKey(key)) {
+                lines.add(key + "=" + remainingValues.remove(key));
+            } else {
+                lines.add(line);
+            }
+        }
+        overrides.forEach((key, value) -> {
+            if (value != null && lines.stream().noneMatch(line -> key.equals(key(line)))) {
+                lines.add(key + "=" + value);
+            }
+        });
+        remainingValues.forEach((key, value) -> lines.add(key + "=" + value));
+        return lines;
+    }
+
+    /**
+     * Keeps the location of the distribution generated by the build tool, unless the existing distribution is hosted elsewhere,
+     * like on a mirror, in which case the generated distribution file name is resolved against the existing location.
+     */
+    static String distributionUrl(String generatedUrl, @Nullable String existingUrl) {
+        if (existingUrl == null || host(existingUrl).equals(host(generatedUrl))) {
+            return generatedUrl;
+        }
+        return existingUrl.substring(0, existingUrl.lastIndexOf('/')) + generatedUrl.substring(generatedUrl.lastIndexOf('/'));
+    }
+
+    static void write(Path propertiesFile, List<String> lines) throws IOException {
+        Files.write(propertiesFile, (String.join("\n", lines) + "\n").getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Nullable
+    private static String key(String line) {
+        String trimmed = line.trim();
+        int separator = line.indexOf('=');
+        if (trimmed.isEmpty() || trimmed.startsWith("#") || trimmed.startsWith("!") || separator < 0) {
+            return null;
+        }
+        return line.substring(0, separator).trim();
+    }
+
+    private static String host(String url) {
+        int start = url.indexOf("//");
+        if (start < 0) {
+            return "";
+        }
+        int end = url.indexOf('/', start + 2);
+        return end < 0 ? url.substring(start + 2) : url.substring(start + 2, end);
+    }
+
+    private WrapperProperties() {
+    }
+
+}
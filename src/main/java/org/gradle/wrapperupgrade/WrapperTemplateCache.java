@@ -0,0 +1,116 @@
+package org.gradle.wrapperupgrade;
+
+import org.gradle.process.ExecOperations;
+import org.gradle.wrapperupgrade.BuildToolStrategy.VersionInfo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+
+import static org.gradle.wrapperupgrade.FileLockUtils.withFileLock;
+
+/**
+ * Keeps the wrapper files generated by each build tool version, so that the wrapper of a build tool version
+ * only has to be run once and all the projects upgraded to that version get their wrapper files copied.
+ */
+final class WrapperTemplateCache {
+
+    private final Path cacheDir;
+
+    WrapperTemplateCache(Path cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Returns the directory of the wrapper files generated by the given build tool version. If not cached yet, they are
+     * generated by running the wrapper of the given project twice in a scratch project made of the given build files.
+     */
+    Path templateFor(ExecOperations execOperations, BuildToolStrategy buildToolStrategy, String key,
+                     Path rootProjectDir, VersionInfo version, Map<String, String> buildFiles) {
+        Path toolDir = cacheDir.resolve(buildToolStrategy.buildToolName().toLowerCase());
+        Path templateDir = toolDir.resolve(key);
+        if (Files.isDirectory(templateDir)) {
+            return templateDir;
+        }
+        withFileLock(toolDir.resolve(key + ".lock"), () -> {
+            if (Files.isDirectory(templateDir)) {
+                return;
+            }
+            Path scratchDir = Files.createTempDirectory(toolDir, key + "-");
+            try {
+                for (Path wrapperFile : buildToolStrategy.wrapperFiles(rootProjectDir)) {
+                    if (Files.exists(wrapperFile)) {
+                        copyRecursively(wrapperFile, scratchDir.resolve(rootProjectDir.relativize(wrapperFile)));
+                    }
+                }
+                for (Map.Entry<String, String> buildFile : buildFiles.entrySet()) {
+                    Files.write(scratchDir.resolve(buildFile.getKey()), buildFile.getValue().getBytes(StandardCharsets.UTF_8));
+                }
+                buildToolStrategy.runWrapper(execOperations, scratchDir, version);
+                buildToolStrategy.runWrapper(execOperations, scratchDir, version);
+                Files.move(scratchDir, templateDir, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                deleteRecursively(scratchDir);
+            }
+        });
+        return templateDir;
+    }
+
+    /**
+     * Copies the given wrapper file from the template to the project, keeping its permissions,
+     * or deletes it from the project if the template does not contain it.
+     */
+    static void copyWrapperFile(Path templateDir, Path rootProjectDir, String relativePath) throws IOException {
+        Path source = templateDir.resolve(relativePath);
+        Path target = rootProjectDir.resolve(relativePath);
+        if (Files.isRegularFile(source)) {
+            Files.createDirectories(target.getParent());
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        } else {
+            Files.deleteIfExists(target);
+        }
+    }
+
+    private static void copyRecursively(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.copy(file, target.resolve(source.relativize(file)), StandardCopyOption.COPY_ATTRIBUTES);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+}
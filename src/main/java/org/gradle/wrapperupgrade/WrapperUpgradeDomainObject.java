@@ -55,6 +55,12 @@ public abstract class WrapperUpgradeDomainObject {
         private final ListProperty<String> assignees;
         private final ListProperty<String> reviewers;
         private final Property<Boolean> recreateClosedPullRequest;
+        private final Property<Boolean> sparseCheckout;
+        private final ListProperty<String> sparseCheckoutDirs;
+        private final Property<Boolean> useWrapperTemplates;
+        private final Property<Boolean> remoteVersionCheck;
+        private final Property<Boolean> embeddedGit;
+        private final Property<Boolean> remoteCommit;
 
         @Inject
         public Options(ObjectFactory objects) {
@@ -64,6 +70,12 @@ public abstract class WrapperUpgradeDomainObject {
             this.assignees = objects.listProperty(String.class);
             this.reviewers = objects.listProperty(String.class);
             this.recreateClosedPullRequest = objects.property(Boolean.class);
+            this.sparseCheckout = objects.property(Boolean.class);
+            this.sparseCheckoutDirs = objects.listProperty(String.class);
+            this.useWrapperTemplates = objects.property(Boolean.class);
+            this.remoteVersionCheck = objects.property(Boolean.class);
+            this.embeddedGit = objects.property(Boolean.class);
+            this.remoteCommit = objects.property(Boolean.class);
         }
 
         public ListProperty<String> getGitCommitExtraArgs() {
@@ -89,6 +101,30 @@ public abstract class WrapperUpgradeDomainObject {
         public Property<Boolean> getRecreateClosedPullRequest() {
             return recreateClosedPullRequest;
         }
+
+        public Property<Boolean> getSparseCheckout() {
+            return sparseCheckout;
+        }
+
+        public ListProperty<String> getSparseCheckoutDirs() {
+            return sparseCheckoutDirs;
+        }
+
+        public Property<Boolean> getUseWrapperTemplates() {
+            return useWrapperTemplates;
+        }
+
+        public Property<Boolean> getRemoteVersionCheck() {
+            return remoteVersionCheck;
+        }
+
+        public Property<Boolean> getEmbeddedGit() {
+            return embeddedGit;
+        }
+
+        public Property<Boolean> getRemoteCommit() {
+            return remoteCommit;
+        }
     }
 
 }
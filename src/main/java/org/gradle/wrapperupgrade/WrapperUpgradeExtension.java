@@ -1,19 +1,52 @@
 package org.gradle.wrapperupgrade;
 
 import org.gradle.api.NamedDomainObjectContainer;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
 
 import javax.inject.Inject;
+import java.time.Duration;
 
 public abstract class WrapperUpgradeExtension {
 
     private final NamedDomainObjectContainer<WrapperUpgradeDomainObject> gradle;
     private final NamedDomainObjectContainer<WrapperUpgradeDomainObject> maven;
+    private final Property<Duration> versionCacheTtl;
+    private final Property<Integer> maxConcurrentUpgrades;
+    private final Property<Boolean> cacheGitRepositories;
+    private final Property<String> gradleVersionsUrl;
+    private final Property<String> mavenRepositoryUrl;
+    private final Property<Boolean> shareWrapperHomes;
+    private final Property<Long> wrapperHomesMaxSize;
+    private final Property<Boolean> prefetchWrapperDistributions;
+    private final Property<Boolean> skipUnchangedProjects;
+    private final DirectoryProperty upgradeStateDir;
+    private final RegularFileProperty fleetManifest;
+    private final ListProperty<String> discoverOrganizations;
+    private final ListProperty<String> discoverTopics;
+    private final Property<String> discoverNamePattern;
 
     @Inject
     public WrapperUpgradeExtension(ObjectFactory objects) {
         this.gradle = objects.domainObjectContainer(WrapperUpgradeDomainObject.class, name -> objects.newInstance(WrapperUpgradeDomainObject.class, name));
         this.maven = objects.domainObjectContainer(WrapperUpgradeDomainObject.class, name -> objects.newInstance(WrapperUpgradeDomainObject.class, name));
+        this.versionCacheTtl = objects.property(Duration.class);
+        this.maxConcurrentUpgrades = objects.property(Integer.class);
+        this.cacheGitRepositories = objects.property(Boolean.class);
+        this.gradleVersionsUrl = objects.property(String.class);
+        this.mavenRepositoryUrl = objects.property(String.class);
+        this.shareWrapperHomes = objects.property(Boolean.class);
+        this.wrapperHomesMaxSize = objects.property(Long.class);
+        this.prefetchWrapperDistributions = objects.property(Boolean.class);
+        this.skipUnchangedProjects = objects.property(Boolean.class);
+        this.upgradeStateDir = objects.directoryProperty();
+        this.fleetManifest = objects.fileProperty();
+        this.discoverOrganizations = objects.listProperty(String.class);
+        this.discoverTopics = objects.listProperty(String.class);
+        this.discoverNamePattern = objects.property(String.class);
     }
 
     public NamedDomainObjectContainer<WrapperUpgradeDomainObject> getGradle() {
@@ -24,4 +57,60 @@ public abstract class WrapperUpgradeExtension {
         return maven;
     }
 
+    public Property<Duration> getVersionCacheTtl() {
+        return versionCacheTtl;
+    }
+
+    public Property<Integer> getMaxConcurrentUpgrades() {
+        return maxConcurrentUpgrades;
+    }
+
+    public Property<Boolean> getCacheGitRepositories() {
+        return cacheGitRepositories;
+    }
+
+    public Property<String> getGradleVersionsUrl() {
+        return gradleVersionsUrl;
+    }
+
+    public Property<String> getMavenRepositoryUrl() {
+        return mavenRepositoryUrl;
+    }
+
+    public Property<Boolean> getShareWrapperHomes() {
+        return shareWrapperHomes;
+    }
+
+    public Property<Long> getWrapperHomesMaxSize() {
+        return wrapperHomesMaxSize;
+    }
+
+    public Property<Boolean> getPrefetchWrapperDistributions() {
+        return prefetchWrapperDistributions;
+    }
+
+    public Property<Boolean> getSkipUnchangedProjects() {
+        return skipUnchangedProjects;
+    }
+
+    public DirectoryProperty getUpgradeStateDir() {
+        return upgradeStateDir;
+    }
+
+    public RegularFileProperty getFleetManifest() {
+        return fleetManifest;
+    }
+
+    public ListProperty<String> getDiscoverOrganizations() {
+        return discoverOrganizations;
+    }
+
+    public ListProperty<String> getDiscoverTopics() {
+        return discoverTopics;
+    }
+
+    public Property<String> getDiscoverNamePattern() {
+        return discoverNamePattern;
+    }
+
 }
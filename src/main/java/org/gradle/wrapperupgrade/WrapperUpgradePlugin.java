@@ -3,20 +3,69 @@ package org.gradle.wrapperupgrade;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
+import org.gradle.api.file.Directory;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.provider.ProviderFactory;
 import org.gradle.api.tasks.TaskProvider;
 import org.gradle.util.GradleVersion;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 @SuppressWarnings("unused")
 public abstract class WrapperUpgradePlugin implements Plugin<Project> {
 
+    private static final String GITHUB_API_URL_SYS_PROP = "wrapperUpgrade.gitHubApiUrl";
+    private static final String UNSIGNED_COMMITS_SYS_PROP = "wrapperUpgrade.unsignedCommits";
+    private static final String DRY_RUN_SYS_PROP = "wrapperUpgrade.dryRun";
+
     @Override
     public void apply(Project project) {
-        if (GradleVersion.current().getBaseVersion().compareTo(GradleVersion.version("6.0")) < 0) {
-            throw new IllegalStateException("This version of the Wrapper Upgrade Gradle plugin is not compatible with Gradle < 6.0");
+        if (GradleVersion.current().getBaseVersion().compareTo(GradleVersion.version("6.1")) < 0) {
+            throw new IllegalStateException("This version of the Wrapper Upgrade Gradle plugin is not compatible with Gradle < 6.1");
         }
 
         WrapperUpgradeExtension wrapperUpgrades = project.getExtensions().create("wrapperUpgrade", WrapperUpgradeExtension.class);
 
+        File cacheDir = new File(project.getGradle().getGradleUserHomeDir(), "caches/wrapper-upgrade");
+        Provider<VersionMetadataService> versionMetadataService = project.getGradle().getSharedServices().registerIfAbsent("wrapperUpgradeVersionMetadata", VersionMetadataService.class,
+            spec -> {
+                spec.getParameters().getCacheDir().set(new File(cacheDir, "versions"));
+                spec.getParameters().getCacheTtl().set(wrapperUpgrades.getVersionCacheTtl());
+                spec.getParameters().getHttpCacheDir().set(new File(cacheDir, "http"));
+                spec.getParameters().getGradleVersionsUrl().set(wrapperUpgrades.getGradleVersionsUrl());
+                spec.getParameters().getMavenRepositoryUrl().set(wrapperUpgrades.getMavenRepositoryUrl());
+            });
+        Provider<GitHubClientService> gitHubClientService = project.getGradle().getSharedServices().registerIfAbsent("wrapperUpgradeGitHubClient", GitHubClientService.class,
+            spec -> {
+                spec.getParameters().getCacheDir().set(new File(cacheDir, "github-responses"));
+                spec.getParameters().getApiUrl().set(project.getProviders().systemProperty(GITHUB_API_URL_SYS_PROP));
+            });
+        Provider<WrapperHomeService> wrapperHomeService = project.getGradle().getSharedServices().registerIfAbsent("wrapperUpgradeWrapperHomes", WrapperHomeService.class,
+            spec -> {
+                spec.getParameters().getHomeDir().set(project.getLayout().dir(wrapperUpgrades.getShareWrapperHomes()
+                    .map(enabled -> enabled ? new File(cacheDir, "wrapper-homes") : null)));
+                spec.getParameters().getMaxSize().set(wrapperUpgrades.getWrapperHomesMaxSize());
+                spec.getParameters().getPrefetchDistributions().set(wrapperUpgrades.getPrefetchWrapperDistributions());
+                spec.getParameters().getGradleUserHome().set(project.getGradle().getGradleUserHomeDir());
+            });
+        Provider<SharedCheckoutService> sharedCheckoutService = project.getGradle().getSharedServices().registerIfAbsent("wrapperUpgradeSharedCheckouts", SharedCheckoutService.class,
+            spec -> { });
+        Provider<UpgradeMetricsService> upgradeMetricsService = project.getGradle().getSharedServices().registerIfAbsent("wrapperUpgradeMetrics", UpgradeMetricsService.class,
+            spec -> spec.getParameters().getReportFile().set(project.getLayout().getBuildDirectory().file("reports/wrapper-upgrade/wrapper-upgrade-metrics.json")));
+        Provider<UpgradeConcurrencyLimit> upgradeConcurrencyLimit = project.getGradle().getSharedServices().registerIfAbsent("wrapperUpgradeConcurrencyLimit", UpgradeConcurrencyLimit.class,
+            spec -> spec.getMaxParallelUsages().set(wrapperUpgrades.getMaxConcurrentUpgrades()));
+        Provider<FleetWindowService> fleetWindowService = project.getGradle().getSharedServices().registerIfAbsent("wrapperUpgradeFleetWindows", FleetWindowService.class,
+            spec -> { });
+
         TaskProvider<Task> upgradeGradleWrapperAllTask = project.getTasks().register("upgradeGradleWrapperAll",
             t -> {
                 t.setGroup("Wrapper Upgrades");
@@ -24,8 +73,9 @@ public abstract class WrapperUpgradePlugin implements Plugin<Project> {
             });
 
         wrapperUpgrades.getGradle().all(upgrade -> {
-            String taskNameSuffix = upgrade.name.substring(0, 1).toUpperCase() + upgrade.name.substring(1);
-            TaskProvider<UpgradeWrapper> upgradeTask = project.getTasks().register("upgradeGradleWrapper" + taskNameSuffix, UpgradeWrapper.class, upgrade, BuildToolStrategy.GRADLE);
+            TaskProvider<UpgradeWrapper> upgradeTask = project.getTasks().register(upgradeTaskName(upgrade, BuildToolStrategy.GRADLE), UpgradeWrapper.class);
+            upgradeTask.configure(task -> configureUpgradeTask(task, upgrade, BuildToolStrategy.GRADLE, project, wrapperUpgrades, cacheDir, versionMetadataService, gitHubClientService, wrapperHomeService,
+                sharedCheckoutService, upgradeMetricsService, upgradeConcurrencyLimit));
             upgradeGradleWrapperAllTask.configure(task -> task.dependsOn(upgradeTask));
         });
 
@@ -36,10 +86,194 @@ public abstract class WrapperUpgradePlugin implements Plugin<Project> {
             });
 
         wrapperUpgrades.getMaven().all(upgrade -> {
-            String taskNameSuffix = upgrade.name.substring(0, 1).toUpperCase() + upgrade.name.substring(1);
-            TaskProvider<UpgradeWrapper> upgradeTask = project.getTasks().register("upgradeMavenWrapper" + taskNameSuffix, UpgradeWrapper.class, upgrade, BuildToolStrategy.MAVEN);
+            TaskProvider<UpgradeWrapper> upgradeTask = project.getTasks().register(upgradeTaskName(upgrade, BuildToolStrategy.MAVEN), UpgradeWrapper.class);
+            upgradeTask.configure(task -> configureUpgradeTask(task, upgrade, BuildToolStrategy.MAVEN, project, wrapperUpgrades, cacheDir, versionMetadataService, gitHubClientService, wrapperHomeService,
+                sharedCheckoutService, upgradeMetricsService, upgradeConcurrencyLimit));
             upgradeMavenWrapperAllTask.configure(task -> task.dependsOn(upgradeTask));
         });
+
+        project.getTasks().register("wrapperUpgradeReport", WrapperUpgradeReport.class,
+            task -> {
+                task.setGroup("Wrapper Upgrades");
+                task.setDescription("Reports the used and latest Gradle and Maven Wrapper versions and the pending upgrade pull requests of all configured projects.");
+                task.getProjects().set(project.provider(() -> Stream.concat(
+                    wrapperUpgrades.getGradle().stream().map(upgrade -> manifestLine(upgrade, BuildToolStrategy.GRADLE)),
+                    wrapperUpgrades.getMaven().stream().map(upgrade -> manifestLine(upgrade, BuildToolStrategy.MAVEN))).collect(Collectors.toList())));
+                task.getMaxConcurrentRequests().convention(16);
+                task.getJsonReportFile().set(project.getLayout().getBuildDirectory().file("reports/wrapper-upgrade/wrapper-upgrade-report.json"));
+                task.getHtmlReportFile().set(project.getLayout().getBuildDirectory().file("reports/wrapper-upgrade/wrapper-upgrade-report.html"));
+                task.getVersionMetadataService().set(versionMetadataService);
+                task.usesService(versionMetadataService);
+                task.getGitHubClientService().set(gitHubClientService);
+                task.usesService(gitHubClientService);
+            });
+
+        TaskProvider<DiscoverWrapperProjects> discoverTask = project.getTasks().register("discoverWrapperProjects", DiscoverWrapperProjects.class,
+            task -> {
+                task.setGroup("Wrapper Upgrades");
+                task.setDescription("Writes a fleet manifest with the Gradle and Maven Wrappers of the repositories of the configured GitHub organizations.");
+                task.getOrganizations().set(wrapperUpgrades.getDiscoverOrganizations());
+                task.getTopics().set(wrapperUpgrades.getDiscoverTopics());
+                task.getNamePattern().set(wrapperUpgrades.getDiscoverNamePattern());
+                task.getManifest().set(project.getLayout().getBuildDirectory().file("wrapper-upgrade/discovered-fleet.jsonl"));
+                task.getInventoryDir().set(new File(cacheDir, "inventory"));
+                task.getGitHubClientService().set(gitHubClientService);
+                task.usesService(gitHubClientService);
+            });
+
+        project.getTasks().register("upgradeWrapperFleet", UpgradeWrapperFleet.class,
+            task -> {
+                task.setGroup("Wrapper Upgrades");
+                task.setDescription("Updates the Gradle and Maven Wrappers on all projects of the fleet manifest.");
+                task.getManifest().set(wrapperUpgrades.getFleetManifest().orElse(discoverTask.flatMap(DiscoverWrapperProjects::getManifest)));
+                task.getMaxConcurrentUpgrades().set(wrapperUpgrades.getMaxConcurrentUpgrades().orElse(project.getGradle().getStartParameter().getMaxWorkerCount()));
+                task.getMaxWorkers().set(project.getGradle().getStartParameter().getMaxWorkerCount());
+                task.getDryRun().set(booleanSystemProperty(project.getProviders(), DRY_RUN_SYS_PROP));
+                task.getUnsignedCommits().set(booleanSystemProperty(project.getProviders(), UNSIGNED_COMMITS_SYS_PROP));
+                task.getCheckoutsDir().set(project.getLayout().getBuildDirectory().dir("git-clones-fleet"));
+                task.getGitRepositoryCacheDir().set(gitRepositoryCacheDir(project, wrapperUpgrades, cacheDir));
+                task.getWrapperTemplateCacheDir().set(new File(cacheDir, "wrapper-templates"));
+                task.getUpgradeStateDir().set(upgradeStateDir(project, wrapperUpgrades, cacheDir));
+                task.getVersionMetadataService().set(versionMetadataService);
+                task.usesService(versionMetadataService);
+                task.getGitHubClientService().set(gitHubClientService);
+                task.usesService(gitHubClientService);
+                task.getWrapperHomeService().set(wrapperHomeService);
+                task.usesService(wrapperHomeService);
+                task.getUpgradeMetricsService().set(upgradeMetricsService);
+                task.usesService(upgradeMetricsService);
+                task.getFleetWindowService().set(fleetWindowService);
+                task.usesService(fleetWindowService);
+                task.usesService(upgradeConcurrencyLimit);
+            });
+    }
+
+    private static void configureUpgradeTask(UpgradeWrapper task, WrapperUpgradeDomainObject upgrade, BuildToolStrategy buildToolStrategy, Project project, WrapperUpgradeExtension wrapperUpgrades, File cacheDir,
+                                             Provider<VersionMetadataService> versionMetadataService, Provider<GitHubClientService> gitHubClientService,
+                                             Provider<WrapperHomeService> wrapperHomeService, Provider<SharedCheckoutService> sharedCheckoutService,
+                                             Provider<UpgradeMetricsService> upgradeMetricsService, Provider<UpgradeConcurrencyLimit> upgradeConcurrencyLimit) {
+        configureUpgradeInputs(task, upgrade, buildToolStrategy, project.getProviders());
+        task.getCheckoutDir().convention(project.getLayout().getBuildDirectory().dir("git-clones" + File.separatorChar + upgrade.name));
+        if (sharesCheckout(upgrade, wrapperUpgrades)) {
+            task.getCheckoutDir().set(project.getLayout().getBuildDirectory().dir("git-clones-shared" + File.separatorChar + sharedCheckoutName(upgrade)));
+            task.getSharedCheckoutService().set(sharedCheckoutService);
+            task.usesService(sharedCheckoutService);
+            // The projects sharing a clone are upgraded one after another, rather than holding a worker while waiting for the clone
+            task.mustRunAfter((Callable<List<String>>) () -> previousSharedCheckoutTasks(upgrade, wrapperUpgrades));
+        } else {
+            task.getOutputs().dir(task.getCheckoutDir());
+        }
+        task.getGitRepositoryCacheDir().set(gitRepositoryCacheDir(project, wrapperUpgrades, cacheDir));
+        task.getWrapperTemplateCacheDir().set(new File(cacheDir, "wrapper-templates"));
+        task.getUpgradeStateDir().set(upgradeStateDir(project, wrapperUpgrades, cacheDir));
+        task.getVersionMetadataService().set(versionMetadataService);
+        task.usesService(versionMetadataService);
+        task.getGitHubClientService().set(gitHubClientService);
+        task.usesService(gitHubClientService);
+        task.getWrapperHomeService().set(wrapperHomeService);
+        task.usesService(wrapperHomeService);
+        task.getUpgradeMetricsService().set(upgradeMetricsService);
+        task.usesService(upgradeMetricsService);
+        task.usesService(upgradeConcurrencyLimit);
+    }
+
+    private static Provider<Directory> gitRepositoryCacheDir(Project project, WrapperUpgradeExtension wrapperUpgrades, File cacheDir) {
+        return project.getLayout().dir(wrapperUpgrades.getCacheGitRepositories()
+            .map(enabled -> enabled ? new File(cacheDir, "git-repositories") : null));
+    }
+
+    private static Provider<Directory> upgradeStateDir(Project project, WrapperUpgradeExtension wrapperUpgrades, File cacheDir) {
+        Provider<Directory> upgradeStateDir = wrapperUpgrades.getUpgradeStateDir().orElse(project.getLayout().dir(project.provider(() -> new File(cacheDir, "upgrade-state"))));
+        return wrapperUpgrades.getSkipUnchangedProjects().flatMap(enabled -> enabled ? upgradeStateDir : null);
+    }
+
+    private static void configureUpgradeInputs(UpgradeWrapper task, WrapperUpgradeDomainObject upgrade, BuildToolStrategy buildToolStrategy, ProviderFactory providers) {
+        WrapperUpgradeDomainObject.Options options = upgrade.getOptions();
+        task.getProjectName().set(upgrade.name);
+        task.getBuildTool().set(buildToolStrategy.buildToolName());
+        task.getRepo().set(upgrade.getRepo());
+        task.getDir().set(upgrade.getDir());
+        task.getBaseBranch().set(upgrade.getBaseBranch());
+        task.getGitCommitExtraArgs().set(options.getGitCommitExtraArgs());
+        task.getAllowPreRelease().set(options.getAllowPreRelease());
+        task.getRecreateClosedPullRequest().set(options.getRecreateClosedPullRequest());
+        task.getLabels().set(options.getLabels());
+        task.getAssignees().set(options.getAssignees());
+        task.getReviewers().set(options.getReviewers());
+        task.getSparseCheckout().set(options.getSparseCheckout());
+        task.getSparseCheckoutDirs().set(options.getSparseCheckoutDirs());
+        task.getUseWrapperTemplates().set(options.getUseWrapperTemplates());
+        task.getRemoteVersionCheck().set(options.getRemoteVersionCheck());
+        task.getEmbeddedGit().set(options.getEmbeddedGit());
+        task.getRemoteCommit().set(options.getRemoteCommit());
+        task.getDryRun().set(booleanSystemProperty(providers, DRY_RUN_SYS_PROP));
+        task.getUnsignedCommits().set(booleanSystemProperty(providers, UNSIGNED_COMMITS_SYS_PROP));
+    }
+
+    private static String manifestLine(WrapperUpgradeDomainObject upgrade, BuildToolStrategy buildToolStrategy) {
+        Map<String, Boolean> booleanOptions = new LinkedHashMap<>();
+        if (upgrade.getOptions().getAllowPreRelease().isPresent()) {
+            booleanOptions.put("allowPreRelease", upgrade.getOptions().getAllowPreRelease().get());
+        }
+        return FleetManifest.line(upgrade.name, buildToolStrategy, upgrade.getRepo().get(), upgrade.getDir().get(), upgrade.getBaseBranch().get(), booleanOptions);
+    }
+
+    /**
+     * The flag is set by the system property without a value or with the value `true`.
+     */
+    private static Provider<Boolean> booleanSystemProperty(ProviderFactory providers, String name) {
+        return providers.systemProperty(name).map(value -> "".equals(value) || Boolean.parseBoolean(value)).orElse(false);
+    }
+
+    /**
+     * The projects with the same repository, base branch and sparse checkout mode share their working copy,
+     * unless committing through the GitHub API, which checks out the wrapper files only.
+     */
+    private static boolean sharesCheckout(WrapperUpgradeDomainObject upgrade, WrapperUpgradeExtension wrapperUpgrades) {
+        return Stream.concat(wrapperUpgrades.getGradle().stream(), wrapperUpgrades.getMaven().stream())
+            .filter(other -> other != upgrade)
+            .anyMatch(other -> sharedCheckoutKey(other).equals(sharedCheckoutKey(upgrade)));
+    }
+
+    /**
+     * Returns the upgrade tasks of the projects that share the clone of the given project and are configured before it.
+     */
+    private static List<String> previousSharedCheckoutTasks(WrapperUpgradeDomainObject upgrade, WrapperUpgradeExtension wrapperUpgrades) {
+        List<String> taskNames = new ArrayList<>();
+        for (WrapperUpgradeDomainObject other : wrapperUpgrades.getGradle()) {
+            if (other == upgrade) {
+                return taskNames;
+            }
+            if (sharedCheckoutKey(other).equals(sharedCheckoutKey(upgrade))) {
+                taskNames.add(upgradeTaskName(other, BuildToolStrategy.GRADLE));
+            }
+        }
+        for (WrapperUpgradeDomainObject other : wrapperUpgrades.getMaven()) {
+            if (other == upgrade) {
+                return taskNames;
+            }
+            if (sharedCheckoutKey(other).equals(sharedCheckoutKey(upgrade))) {
+                taskNames.add(upgradeTaskName(other, BuildToolStrategy.MAVEN));
+            }
+        }
+        return taskNames;
+    }
+
+    private static String upgradeTaskName(WrapperUpgradeDomainObject upgrade, BuildToolStrategy buildToolStrategy) {
+        return "upgrade" + buildToolStrategy.buildToolName() + "Wrapper" + upgrade.name.substring(0, 1).toUpperCase() + upgrade.name.substring(1);
+    }
+
+    private static List<Object> sharedCheckoutKey(WrapperUpgradeDomainObject upgrade) {
+        WrapperUpgradeDomainObject.Options options = upgrade.getOptions();
+        if (options.getRemoteCommit().getOrElse(false)) {
+            return Collections.singletonList(upgrade);
+        }
+        return Arrays.asList(upgrade.getRepo().get(), upgrade.getBaseBranch().get(), options.getSparseCheckout().getOrElse(false));
+    }
+
+    private static String sharedCheckoutName(WrapperUpgradeDomainObject upgrade) {
+        String name = upgrade.getRepo().get() + "-" + upgrade.getBaseBranch().get() + (upgrade.getOptions().getSparseCheckout().getOrElse(false) ? "-sparse" : "");
+        return name.replaceAll("^[a-z]+://", "").replaceAll("[^A-Za-z0-9._-]", "_");
     }
 
 }
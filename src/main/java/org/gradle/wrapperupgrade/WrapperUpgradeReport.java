@@ -0,0 +1,137 @@
+package org.gradle.wrapperupgrade;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.specs.Specs;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.DisableCachingByDefault;
+import org.kohsuke.github.GitHub;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.gradle.wrapperupgrade.PullRequestUtils.branchPrefix;
+
+/**
+ * Reports the used and latest versions of the wrapper of each configured project, and its pending upgrade pull requests,
+ * without cloning the projects nor changing anything. The wrapper properties are read through the GitHub contents API,
+ * and the projects are queried concurrently.
+ */
+@DisableCachingByDefault(because = "Depends on the current state of the repositories")
+public abstract class WrapperUpgradeReport extends DefaultTask {
+
+    public WrapperUpgradeReport() {
+        // The state of the repositories and the latest versions are not inputs, hence the report is always computed
+        getOutputs().upToDateWhen(Specs.satisfyNone());
+    }
+
+    /**
+     * The configured projects, as fleet manifest lines.
+     */
+    @Input
+    public abstract ListProperty<String> getProjects();
+
+    @Input
+    public abstract Property<Integer> getMaxConcurrentRequests();
+
+    @OutputFile
+    public abstract RegularFileProperty getJsonReportFile();
+
+    @OutputFile
+    public abstract RegularFileProperty getHtmlReportFile();
+
+    @Internal
+    public abstract Property<VersionMetadataService> getVersionMetadataService();
+
+    @Internal
+    public abstract Property<GitHubClientService> getGitHubClientService();
+
+    @TaskAction
+    void report() throws IOException, InterruptedException {
+        List<FleetManifest.Entry> entries = new ArrayList<>();
+        for (String line : getProjects().get()) {
+            entries.add(FleetManifest.parse(line));
+        }
+        GitHubClientService gitHubClientService = getGitHubClientService().get();
+        VersionMetadataService versionMetadataService = getVersionMetadataService().get();
+        GitHub gitHub = gitHubClientService.gitHub();
+
+        // The requests are I/O bound, and the GitHub client throttles them as the rate limit decreases
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(getMaxConcurrentRequests().get(), entries.size())));
+        List<FleetStatusReport.ProjectStatus> projects = new ArrayList<>();
+        try {
+            List<Future<FleetStatusReport.ProjectStatus>> statuses = new ArrayList<>();
+            for (FleetManifest.Entry entry : entries) {
+                statuses.add(executor.submit(() -> status(entry, gitHubClientService, gitHub, versionMetadataService)));
+            }
+            for (Future<FleetStatusReport.ProjectStatus> status : statuses) {
+                projects.add(status.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        FleetStatusReport report = new FleetStatusReport(Instant.now(), projects);
+        Path jsonReportFile = getJsonReportFile().get().getAsFile().toPath();
+        Path htmlReportFile = getHtmlReportFile().get().getAsFile().toPath();
+        report.writeJson(jsonReportFile);
+        report.writeHtml(htmlReportFile);
+        getLogger().lifecycle(String.format("%d of the %d projects are on the latest version, %d are outdated and %d unknown, with %d pending pull requests. See the report at %s",
+            report.count(FleetStatusReport.Status.UP_TO_DATE), projects.size(), report.count(FleetStatusReport.Status.OUTDATED),
+            report.count(FleetStatusReport.Status.UNKNOWN), report.pendingPullRequests(), htmlReportFile.toUri()));
+    }
+
+    /**
+     * Failures are reported with the status of the project rather than failing the report.
+     */
+    private static FleetStatusReport.ProjectStatus status(FleetManifest.Entry entry, GitHubClientService gitHubClientService, GitHub gitHub,
+                                                          VersionMetadataService versionMetadataService) {
+        BuildToolStrategy buildToolStrategy = entry.buildToolStrategy;
+        String usedVersion = null;
+        String latestVersion = null;
+        List<PullRequestInfo> pullRequests = new ArrayList<>();
+        String failure = null;
+        try {
+            Optional<String> repositoryName = UpgradeWrapperWorkAction.gitHubRepositoryName(entry.repo);
+            if (!repositoryName.isPresent()) {
+                throw new IllegalStateException("Not a GitHub repository: " + entry.repo);
+            }
+            String path = Paths.get(entry.dir).resolve(buildToolStrategy.wrapperPropertiesFile()).normalize().toString().replace('\\', '/');
+            try (InputStream is = gitHub.getRepository(repositoryName.get()).getFileContent(path, entry.baseBranch).read()) {
+                Properties wrapperProperties = new Properties();
+                wrapperProperties.load(is);
+                usedVersion = buildToolStrategy.extractCurrentVersion(wrapperProperties).version;
+            }
+            Boolean allowPreRelease = entry.booleanOption("allowPreRelease");
+            latestVersion = versionMetadataService.lookupLatestVersion(buildToolStrategy, allowPreRelease != null && allowPreRelease).version;
+            String branchPrefix = branchPrefix(entry.name, buildToolStrategy.buildToolName().toLowerCase());
+            GitHubRepositoryClient client = GitHubRepositoryClient.create(gitHubClientService, gitHub, entry.name, entry.repo, branchPrefix + latestVersion, branchPrefix,
+                Collections.emptyList(), Collections.emptyList());
+            client.openPullRequests().forEach(pullRequests::add);
+        } catch (IOException | RuntimeException e) {
+            failure = e.getMessage() != null ? e.getMessage() : e.toString();
+        }
+        return new FleetStatusReport.ProjectStatus(entry.name, buildToolStrategy.buildToolName(), entry.repo, entry.dir, entry.baseBranch,
+            usedVersion, latestVersion, pullRequests, failure);
+    }
+
+}
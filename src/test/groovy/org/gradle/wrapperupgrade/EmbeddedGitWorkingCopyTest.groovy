@@ -0,0 +1,104 @@
+package org.gradle.wrapperupgrade
+
+import org.eclipse.jgit.api.Git
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+
+class EmbeddedGitWorkingCopyTest extends Specification {
+
+    @TempDir
+    Path tempDir
+
+    Path checkoutDir
+
+    def setup() {
+        def originDir = tempDir.resolve('origin.git')
+        Git.init().setBare(true).setInitialBranch('main').setDirectory(originDir.toFile()).call().close()
+        checkoutDir = tempDir.resolve('checkout')
+        def git = Git.cloneRepository().setURI(originDir.toUri().toString()).setDirectory(checkoutDir.toFile()).call()
+        def config = git.repository.config
+        config.setString('user', null, 'name', 'Some User')
+        config.setString('user', null, 'email', 'some.user@example.com')
+        config.save()
+        checkoutDir.resolve('gradle/wrapper').toFile().mkdirs()
+        checkoutDir.resolve('gradle/wrapper/gradle-wrapper.properties').text = 'distributionUrl=gradle-7.5-bin.zip\n'
+        checkoutDir.resolve('gradlew').text = 'old'
+        git.add().addFilepattern('.').call()
+        git.commit().setSign(false).setMessage('Initial commit').call()
+        git.push().call()
+        git.close()
+    }
+
+    def "detect changes of tracked files only"() {
+        given:
+        def workingCopy = new EmbeddedGitWorkingCopy(checkoutDir)
+
+        expect:
+        !workingCopy.hasChanges()
+
+        when:
+        checkoutDir.resolve('untracked.txt').text = 'untracked'
+
+        then:
+        !workingCopy.hasChanges()
+
+        when:
+        checkoutDir.resolve('gradle/wrapper/gradle-wrapper.properties').text = 'distributionUrl=gradle-7.6-bin.zip\n'
+
+        then:
+        workingCopy.hasChanges()
+
+        cleanup:
+        workingCopy.close()
+    }
+
+    def "commit wrapper files with a sign-off on a new branch and push it"() {
+        given:
+        def workingCopy = new EmbeddedGitWorkingCopy(checkoutDir)
+        checkoutDir.resolve('gradle/wrapper/gradle-wrapper.properties').text = 'distributionUrl=gradle-7.6-bin.zip\n'
+        checkoutDir.resolve('gradlew').toFile().delete()
+        checkoutDir.resolve('other.txt').text = 'not a wrapper file'
+
+        when:
+        workingCopy.disableCommitSigning()
+        workingCopy.add([checkoutDir.resolve('gradlew'), checkoutDir.resolve('gradle/wrapper')])
+        workingCopy.checkoutBranch('wrapperbot/project/gradle-wrapper-7.6')
+        workingCopy.commit('Bump Gradle Wrapper from 7.5 to 7.6.', ['--author=Other User <other.user@example.com>', '--no-verify'])
+        workingCopy.push('wrapperbot/project/gradle-wrapper-7.6')
+        workingCopy.close()
+
+        then:
+        def origin = Git.open(tempDir.resolve('origin.git').toFile())
+        def commit = origin.log().add(origin.repository.resolve('refs/heads/wrapperbot/project/gradle-wrapper-7.6')).setMaxCount(1).call().first()
+        commit.fullMessage == 'Bump Gradle Wrapper from 7.5 to 7.6.\n\nSigned-off-by: Some User <some.user@example.com>'
+        commit.authorIdent.name == 'Other User'
+        commit.authorIdent.emailAddress == 'other.user@example.com'
+        commit.committerIdent.name == 'Some User'
+
+        def status = Git.open(checkoutDir.toFile()).status().call()
+        status.clean == false
+        status.untracked == ['other.txt'] as Set
+        status.uncommittedChanges.isEmpty()
+
+        cleanup:
+        origin?.close()
+    }
+
+    def "fail on unsupported commit argument"() {
+        given:
+        def workingCopy = new EmbeddedGitWorkingCopy(checkoutDir)
+
+        when:
+        workingCopy.commit('Some message', ['--amend'])
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Unsupported Git commit argument '--amend' with the embedded Git engine"
+
+        cleanup:
+        workingCopy.close()
+    }
+
+}
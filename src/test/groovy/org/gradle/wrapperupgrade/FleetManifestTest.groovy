@@ -0,0 +1,123 @@
+package org.gradle.wrapperupgrade
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+
+class FleetManifestTest extends Specification {
+
+    @TempDir
+    Path tempDir
+
+    def "read projects one at a time"() {
+        given:
+        def manifestFile = tempDir.resolve('fleet.jsonl')
+        manifestFile.text = '''\
+            {"name": "project-a", "buildTool": "gradle", "repo": "org/project-a", "dir": "samples/gradle", "baseBranch": "dev", "options": {"allowPreRelease": true, "labels": ["dependencies", "java"]}}
+
+            {"buildTool": "Maven", "repo": "https://github.com/org/project-b.git"}
+            '''.stripIndent()
+
+        when:
+        def manifest = FleetManifest.open(manifestFile)
+        def first = manifest.next()
+        def second = manifest.next()
+        def end = manifest.next()
+        manifest.close()
+
+        then:
+        first.name == 'project-a'
+        first.buildToolStrategy == BuildToolStrategy.GRADLE
+        first.repo == 'org/project-a'
+        first.dir == 'samples/gradle'
+        first.baseBranch == 'dev'
+        first.booleanOption('allowPreRelease')
+        first.booleanOption('remoteCommit') == null
+        first.listOption('labels') == ['dependencies', 'java']
+        first.listOption('reviewers') == []
+
+        second.name == 'project-b'
+        second.buildToolStrategy == BuildToolStrategy.MAVEN
+        second.dir == '.'
+        second.baseBranch == 'main'
+
+        end == null
+    }
+
+    def "derive project name from repository and directory"() {
+        expect:
+        FleetManifest.parse("""{"buildTool": "gradle", "repo": "$repo", "dir": "$dir"}""").name == expectedName
+
+        where:
+        repo                                   | dir              | expectedName
+        'org/project'                          | '.'              | 'project'
+        'org/project'                          | 'samples/gradle' | 'project-samples-gradle'
+        'https://github.com/org/project.git'   | './build/'       | 'project-build'
+    }
+
+    def "write project as manifest line"() {
+        when:
+        def entry = FleetManifest.parse(FleetManifest.line('project-a', BuildToolStrategy.MAVEN, 'org/project-a', 'samples/maven', 'dev', [allowPreRelease: true]))
+
+        then:
+        entry.name == 'project-a'
+        entry.buildToolStrategy == BuildToolStrategy.MAVEN
+        entry.repo == 'org/project-a'
+        entry.dir == 'samples/maven'
+        entry.baseBranch == 'dev'
+        entry.booleanOption('allowPreRelease')
+    }
+
+    def "reject invalid project with its line number"() {
+        given:
+        def manifestFile = tempDir.resolve('fleet.jsonl')
+        manifestFile.text = '{"buildTool": "gradle", "repo": "org/project-a"}\n' + line + '\n'
+        def manifest = FleetManifest.open(manifestFile)
+        manifest.next()
+
+        when:
+        manifest.next()
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Invalid project at line 2 of $manifestFile: $message"
+
+        cleanup:
+        manifest.close()
+
+        where:
+        line                                                                             | message
+        '{"buildTool": "ant", "repo": "org/project"}'                                    | "Unknown build tool 'ant', expected 'gradle' or 'maven'"
+        '{"buildTool": "gradle"}'                                                        | "Expected field 'repo' to be a string"
+        '{"buildTool": "gradle", "repo": "org/project", "branch": "main"}'               | "Unknown field 'branch'"
+        '{"buildTool": "gradle", "repo": "org/project", "options": {"labels": "java"}}'  | "Expected option 'labels' to be an array"
+        '{"buildTool": "gradle", "repo": "org/project", "options": {"dryRun": true}}'    | "Unknown field 'dryRun'"
+        '["gradle", "org/project"]'                                                      | 'Expected a JSON object'
+        '{"buildTool": "gradle", "repo": "org/project", "name": "x/../../.."}'           | "Invalid name 'x/../../..', expected letters, digits, '.', '_' or '-'"
+    }
+
+    def "read the projects following an invalid project"() {
+        given:
+        def manifestFile = tempDir.resolve('fleet.jsonl')
+        manifestFile.text = '{"buildTool": "ant", "repo": "org/project-a"}\n{"buildTool": "gradle", "repo": "org/project-b"}\n'
+        def manifest = FleetManifest.open(manifestFile)
+
+        when:
+        manifest.next()
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        def entry = manifest.next()
+
+        then:
+        entry.name == 'project-b'
+        manifest.next() == null
+
+        cleanup:
+        manifest.close()
+    }
+
+}
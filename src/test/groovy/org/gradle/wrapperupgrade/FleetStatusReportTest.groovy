@@ -0,0 +1,72 @@
+package org.gradle.wrapperupgrade
+
+import groovy.json.JsonSlurper
+import org.kohsuke.github.GHIssueState
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+import java.time.Instant
+
+import static org.gradle.wrapperupgrade.FleetStatusReport.Status.OUTDATED
+import static org.gradle.wrapperupgrade.FleetStatusReport.Status.UNKNOWN
+import static org.gradle.wrapperupgrade.FleetStatusReport.Status.UP_TO_DATE
+
+class FleetStatusReportTest extends Specification {
+
+    @TempDir
+    Path reportDir
+
+    def "derive status from used and latest versions"() {
+        expect:
+        status(usedVersion, latestVersion).status() == expectedStatus
+
+        where:
+        usedVersion | latestVersion | expectedStatus
+        '8.5'       | '8.5'         | UP_TO_DATE
+        '8.6'       | '8.5'         | UP_TO_DATE
+        '8.4.1'     | '8.5'         | OUTDATED
+        '3.9.5'     | '3.9.10'      | OUTDATED
+        null        | '8.5'         | UNKNOWN
+        '8.5'       | null          | UNKNOWN
+    }
+
+    def "write json report with totals"() {
+        given:
+        def pr = new PullRequestInfo('id', 42, 'wrapperbot/app/gradle-wrapper-8.5', GHIssueState.OPEN, 'https://github.com/org/app/pull/42')
+        def report = new FleetStatusReport(Instant.parse('2024-05-01T10:00:00Z'), [
+            status('8.4', '8.5', [pr]),
+            status('8.5', '8.5'),
+            status(null, '8.5', [], 'Not Found')
+        ])
+
+        when:
+        report.writeJson(reportDir.resolve('reports/report.json'))
+        def json = new JsonSlurper().parse(reportDir.resolve('reports/report.json').toFile())
+
+        then:
+        json.time == '2024-05-01T10:00:00Z'
+        json.projects*.status == ['OUTDATED', 'UP_TO_DATE', 'UNKNOWN']
+        json.projects[0].pullRequests == [[number: 42, branch: 'wrapperbot/app/gradle-wrapper-8.5', url: 'https://github.com/org/app/pull/42']]
+        json.projects[2].failure == 'Not Found'
+        json.totals == [projects: 3, UP_TO_DATE: 1, OUTDATED: 1, UNKNOWN: 1, pullRequests: 1]
+    }
+
+    def "escape html report"() {
+        given:
+        def report = new FleetStatusReport(Instant.now(), [status(null, '8.5', [], "Could not find property 'distributionUrl' in <file>")])
+
+        when:
+        report.writeHtml(reportDir.resolve('report.html'))
+
+        then:
+        def html = reportDir.resolve('report.html').text
+        html.contains("<td>Could not find property 'distributionUrl' in &lt;file&gt;</td>")
+        html.contains('<tr class="UNKNOWN">')
+    }
+
+    private static FleetStatusReport.ProjectStatus status(String usedVersion, String latestVersion, List<PullRequestInfo> pullRequests = [], String failure = null) {
+        new FleetStatusReport.ProjectStatus('app', 'Gradle', 'org/app', '.', 'main', usedVersion, latestVersion, pullRequests, failure)
+    }
+
+}
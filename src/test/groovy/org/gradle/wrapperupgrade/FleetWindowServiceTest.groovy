@@ -0,0 +1,66 @@
+package org.gradle.wrapperupgrade
+
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class FleetWindowServiceTest extends Specification {
+
+    def service = new FleetWindowService() {
+        @Override
+        org.gradle.api.services.BuildServiceParameters.None getParameters() {
+            null
+        }
+    }
+
+    def "start the next upgrade as soon as any upgrade completes"() {
+        given:
+        def executor = Executors.newSingleThreadExecutor()
+        def window = service.open(':upgradeWrapperFleet', 2)
+        window.acquire()
+        window.acquire()
+
+        when:
+        def started = new CountDownLatch(1)
+        executor.submit {
+            window.acquire()
+            started.countDown()
+        }
+
+        then:
+        !started.await(200, TimeUnit.MILLISECONDS)
+
+        when:
+        // The first upgrade completes while the second one is still running
+        service.release(':upgradeWrapperFleet')
+
+        then:
+        started.await(5, TimeUnit.SECONDS)
+
+        cleanup:
+        window?.close()
+        executor.shutdownNow()
+    }
+
+    def "keep the windows of the fleet tasks apart"() {
+        given:
+        def window = service.open(':upgradeWrapperFleet', 1)
+        def otherWindow = service.open(':other:upgradeWrapperFleet', 1)
+        window.acquire()
+
+        when:
+        service.release(':other:upgradeWrapperFleet')
+        service.release(':unknown:upgradeWrapperFleet')
+
+        then:
+        !window.slots.tryAcquire()
+        otherWindow.slots.tryAcquire(2)
+
+        cleanup:
+        window?.close()
+        otherWindow?.close()
+    }
+
+}
@@ -0,0 +1,22 @@
+package org.gradle.wrapperupgrade
+
+import spock.lang.Specification
+
+class GitCloneUtilsTest extends Specification {
+
+    def "sparse checkout paths"() {
+        when:
+        def paths = GitCloneUtils.sparseCheckoutPaths(rootProjectDir, dirs)
+
+        then:
+        paths == expectedPaths
+
+        where:
+        rootProjectDir   | dirs                                | expectedPaths
+        '.'              | ['gradle', 'buildSrc']              | ['gradle', 'buildSrc']
+        'samples/gradle' | ['gradle', 'buildSrc']              | ['samples/gradle/gradle', 'samples/gradle/buildSrc']
+        'samples/maven'  | ['.mvn', '../shared', '.mvn']       | ['samples/maven/.mvn', 'samples/shared']
+        '.'              | ['.']                               | []
+    }
+
+}
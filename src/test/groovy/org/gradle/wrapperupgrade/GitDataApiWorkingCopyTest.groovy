@@ -0,0 +1,157 @@
+package org.gradle.wrapperupgrade
+
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.eclipse.jgit.lib.Config
+import org.eclipse.jgit.lib.Constants
+import org.eclipse.jgit.lib.ObjectInserter
+import org.kohsuke.github.GitHubBuilder
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+
+class GitDataApiWorkingCopyTest extends Specification {
+
+    @TempDir
+    Path checkoutDir
+
+    MockWebServer server = new MockWebServer()
+    Map<String, byte[]> blobs = [:]
+    List<Map> created = []
+
+    def setup() {
+        def gradlew = blob('old gradlew')
+        def properties = blob('distributionUrl=https\\://services.gradle.org/distributions/gradle-7.5-bin.zip\n')
+        def jar = blob('old jar')
+        def trees = [
+            'commit-1': [sha: 'tree-root', tree: [entry('gradlew', '100755', 'blob', gradlew), entry('gradle', '040000', 'tree', 'tree-gradle')]],
+            'tree-gradle': [sha: 'tree-gradle', tree: [entry('wrapper', '040000', 'tree', 'tree-wrapper')]],
+            'tree-wrapper': [sha: 'tree-wrapper', tree: [entry('gradle-wrapper.properties', '100644', 'blob', properties), entry('gradle-wrapper.jar', '100644', 'blob', jar)]]
+        ]
+        server.dispatcher = new Dispatcher() {
+            @Override
+            MockResponse dispatch(RecordedRequest request) {
+                def path = request.requestUrl.encodedPath()
+                if (request.method == 'POST') {
+                    def body = new JsonSlurper().parseText(request.body.readUtf8())
+                    created << [path: path, body: body]
+                    return json([sha: "created-${created.size()}", tree: [], url: server.url(path).toString()])
+                }
+                if (path == '/repos/org/repo') {
+                    return json([name: 'repo', full_name: 'org/repo', owner: [login: 'org'], url: server.url(path).toString()])
+                }
+                if (path == '/repos/org/repo/git/refs/heads/main') {
+                    return json([ref: 'refs/heads/main', object: [sha: 'commit-1', type: 'commit']])
+                }
+                if (path.startsWith('/repos/org/repo/git/trees/')) {
+                    return json(trees[path.substring('/repos/org/repo/git/trees/'.length())])
+                }
+                if (path.startsWith('/repos/org/repo/git/blobs/')) {
+                    return new MockResponse().setBody(new okio.Buffer().write(blobs[path.substring('/repos/org/repo/git/blobs/'.length())]))
+                }
+                return new MockResponse().setResponseCode(404)
+            }
+        }
+    }
+
+    def cleanup() {
+        server.shutdown()
+    }
+
+    def "download wrapper files of base branch"() {
+        when:
+        def workingCopy = checkout()
+
+        then:
+        checkoutDir.resolve('gradlew').text == 'old gradlew'
+        checkoutDir.resolve('gradlew').toFile().canExecute()
+        checkoutDir.resolve('gradle/wrapper/gradle-wrapper.jar').text == 'old jar'
+        !workingCopy.hasChanges()
+        workingCopy.downloadedBytes() == blobs.values().sum { it.length }
+    }
+
+    def "commit changed wrapper files on a new branch through the API"() {
+        given:
+        def workingCopy = checkout()
+        checkoutDir.resolve('gradle/wrapper/gradle-wrapper.properties').text = 'distributionUrl=https\\://services.gradle.org/distributions/gradle-7.6-bin.zip\n'
+        checkoutDir.resolve('gradle/wrapper/gradle-wrapper.jar').toFile().delete()
+        checkoutDir.resolve('gradlew.bat').text = 'new gradlew.bat'
+        checkoutDir.resolve('other.txt').text = 'not a wrapper file'
+
+        expect:
+        workingCopy.hasChanges()
+
+        when:
+        workingCopy.add([checkoutDir.resolve('gradlew'), checkoutDir.resolve('gradlew.bat'), checkoutDir.resolve('gradle/wrapper')])
+        workingCopy.checkoutBranch('wrapperbot/project/gradle-wrapper-7.6')
+        workingCopy.commit('Bump Gradle Wrapper from 7.5 to 7.6.', ['--author=Other User <other.user@example.com>'])
+
+        then:
+        created.isEmpty()
+
+        when:
+        workingCopy.push('wrapperbot/project/gradle-wrapper-7.6')
+
+        then:
+        created*.path == ['/repos/org/repo/git/blobs', '/repos/org/repo/git/blobs', '/repos/org/repo/git/trees', '/repos/org/repo/git/commits', '/repos/org/repo/git/refs']
+        created[0..1]*.body*.content.collect { new String(it.decodeBase64(), 'UTF-8') } == [
+            'distributionUrl=https\\://services.gradle.org/distributions/gradle-7.6-bin.zip\n',
+            'new gradlew.bat'
+        ]
+        def tree = created[2].body
+        tree.base_tree == 'tree-root'
+        tree.tree == [
+            [path: 'gradle/wrapper/gradle-wrapper.jar', mode: '100644', type: 'blob', sha: null],
+            [path: 'gradle/wrapper/gradle-wrapper.properties', mode: '100644', type: 'blob', sha: 'created-1'],
+            [path: 'gradlew.bat', mode: '100644', type: 'blob', sha: 'created-2']
+        ]
+        def commit = created[3].body
+        commit.message == 'Bump Gradle Wrapper from 7.5 to 7.6.\n\nSigned-off-by: Some User <some.user@example.com>'
+        commit.tree == 'created-3'
+        commit.parents == ['commit-1']
+        commit.author.name == 'Other User'
+        commit.committer.email == 'some.user@example.com'
+        created[4].body == [ref: 'refs/heads/wrapperbot/project/gradle-wrapper-7.6', sha: 'created-4']
+    }
+
+    def "fail on unsupported commit argument"() {
+        given:
+        def workingCopy = checkout()
+
+        when:
+        workingCopy.commit('Some message', ['--gpg-sign'])
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Unsupported Git commit argument '--gpg-sign' when committing through the GitHub API"
+    }
+
+    private GitDataApiWorkingCopy checkout() {
+        def gitHub = new GitHubBuilder().withEndpoint(server.url('/').toString()).build()
+        def config = new Config()
+        config.setString('user', null, 'name', 'Some User')
+        config.setString('user', null, 'email', 'some.user@example.com')
+        GitDataApiWorkingCopy.checkout(gitHub.getRepository('org/repo'), 'main', checkoutDir, ['gradlew', 'gradlew.bat', 'gradle/wrapper'], config)
+    }
+
+    private String blob(String content) {
+        def bytes = content.getBytes('UTF-8')
+        def sha = new ObjectInserter.Formatter().idFor(Constants.OBJ_BLOB, bytes).name()
+        blobs[sha] = bytes
+        sha
+    }
+
+    private Map entry(String path, String mode, String type, String sha) {
+        [path: path, mode: mode, type: type, sha: sha, url: server.url("/repos/org/repo/git/${type}s/${sha}").toString()]
+    }
+
+    private static MockResponse json(Object body) {
+        new MockResponse().setHeader('Content-Type', 'application/json').setBody(JsonOutput.toJson(body))
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.gradle.wrapperupgrade
+
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.gradle.testfixtures.ProjectBuilder
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+
+class GitHubClientServiceTest extends Specification {
+
+    @TempDir
+    Path tempDir
+
+    MockWebServer server = new MockWebServer()
+
+    def cleanup() {
+        server.shutdown()
+    }
+
+    def "revalidate cached responses with their ETag"() {
+        given:
+        def repository = '{"name": "some-repo", "full_name": "some-org/some-repo"}'
+        server.enqueue(new MockResponse().setHeader('ETag', '"v1"').setHeader('Content-Type', 'application/json').setBody(repository))
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader('ETag', '"v1"'))
+        def service = service(server.url('/').toString())
+
+        when:
+        def first = service.gitHub().getRepository('some-org/some-repo')
+        def second = service.gitHub().getRepository('some-org/some-repo')
+
+        then:
+        first.fullName == 'some-org/some-repo'
+        second.fullName == 'some-org/some-repo'
+        server.takeRequest().getHeader('If-None-Match') == null
+        server.takeRequest().getHeader('If-None-Match') == '"v1"'
+
+        cleanup:
+        service.close()
+    }
+
+    def "count GitHub calls against the upgrade running on the calling thread"() {
+        given:
+        def repository = '{"name": "some-repo", "full_name": "some-org/some-repo"}'
+        2.times { server.enqueue(new MockResponse().setHeader('Content-Type', 'application/json').setBody(repository)) }
+        def service = service(server.url('/').toString())
+        def metrics = new UpgradeMetrics('some-project', 'Gradle', 'some-org/some-repo')
+
+        when:
+        service.gitHub().getRepository('some-org/some-repo')
+        try (def ignored = metrics.activate()) {
+            service.gitHub().getRepository('some-org/some-repo')
+        }
+
+        then:
+        metrics.counters()[UpgradeMetrics.API_CALLS] == 1
+
+        cleanup:
+        service.close()
+    }
+
+    def "look up users once per build"() {
+        given:
+        server.enqueue(new MockResponse().setHeader('Content-Type', 'application/json').setBody('{"login": "some-user", "id": 1}'))
+        def service = service(server.url('/').toString())
+
+        when:
+        def first = service.user('some-user')
+        def second = service.user('some-user')
+
+        then:
+        first.login == 'some-user'
+        second.is(first)
+        server.requestCount == 1
+
+        cleanup:
+        service.close()
+    }
+
+    private GitHubClientService service(String apiUrl) {
+        def objects = ProjectBuilder.builder().withProjectDir(tempDir.resolve('project').toFile()).build().objects
+        def params = Stub(GitHubClientService.Params) {
+            getCacheDir() >> objects.directoryProperty().fileValue(tempDir.resolve('cache').toFile())
+            getApiUrl() >> objects.property(String).value(apiUrl)
+        }
+        return new GitHubClientService() {
+            @Override
+            GitHubClientService.Params getParameters() {
+                params
+            }
+        }
+    }
+
+}
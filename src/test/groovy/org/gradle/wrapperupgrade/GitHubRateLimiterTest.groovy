@@ -0,0 +1,170 @@
+package org.gradle.wrapperupgrade
+
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import spock.lang.Specification
+
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.time.ZoneId
+
+class GitHubRateLimiterTest extends Specification {
+
+    MockWebServer server = new MockWebServer()
+    Instant now = Instant.parse('2022-10-24T10:00:00Z')
+    List<Long> sleeps = []
+
+    def cleanup() {
+        server.shutdown()
+    }
+
+    def "retry after the delay of a secondary rate limit"() {
+        given:
+        server.enqueue(new MockResponse().setResponseCode(403).setHeader('Retry-After', '60').setBody('{"message": "You have exceeded a secondary rate limit"}'))
+        server.enqueue(new MockResponse().setBody('{}'))
+
+        when:
+        def response = execute(get())
+
+        then:
+        response.code() == 200
+        server.requestCount == 2
+        sleeps.size() == 1
+        sleeps[0] >= 60_000 && sleeps[0] <= 61_000
+    }
+
+    def "back off on secondary rate limit without delay"() {
+        given:
+        server.enqueue(new MockResponse().setResponseCode(403).setBody('{"message": "You have exceeded a secondary rate limit"}'))
+        server.enqueue(new MockResponse().setBody('{}'))
+
+        when:
+        def response = execute(get())
+
+        then:
+        response.code() == 200
+        sleeps.size() == 1
+        sleeps[0] >= 30_000 && sleeps[0] <= 60_000
+    }
+
+    def "do not retry other forbidden responses"() {
+        given:
+        server.enqueue(new MockResponse().setResponseCode(403).setBody('{"message": "Resource not accessible by integration"}'))
+
+        when:
+        def response = execute(get())
+
+        then:
+        response.code() == 403
+        server.requestCount == 1
+        sleeps.empty
+    }
+
+    def "wait for the reset of an exhausted rate limit"() {
+        given:
+        def reset = now.plusSeconds(120).epochSecond.toString()
+        server.enqueue(new MockResponse().setHeader('x-ratelimit-remaining', '0').setHeader('x-ratelimit-reset', reset).setBody('{}'))
+        server.enqueue(new MockResponse().setBody('{}'))
+        def client = client()
+
+        when:
+        execute(client, get())
+        execute(client, get())
+
+        then:
+        sleeps.size() == 1
+        sleeps[0] >= 120_000 && sleeps[0] <= 121_000
+    }
+
+    def "spread mutations over time"() {
+        given:
+        server.enqueue(new MockResponse().setBody('{}'))
+        server.enqueue(new MockResponse().setBody('{}'))
+        def client = client()
+
+        when:
+        execute(client, post(path, body))
+        execute(client, post(path, body))
+
+        then:
+        sleeps == [1000L]
+
+        where:
+        path                              | body
+        '/repos/some-org/some-repo/pulls' | '{"title": "Bump"}'
+        '/graphql'                        | '{"query": "mutation($id: ID!) { closePullRequest(input: {pullRequestId: $id}) { clientMutationId } }"}'
+    }
+
+    def "do not spread GraphQL queries over time"() {
+        given:
+        3.times { server.enqueue(new MockResponse().setBody('{}')) }
+        def client = client()
+        def query = post('/graphql', '{"query": "query($owner: String!) { repository(owner: $owner, name: \\"repo\\") { id } }"}')
+
+        when:
+        3.times { execute(client, query) }
+
+        then:
+        server.requestCount == 3
+        sleeps.empty
+    }
+
+    def "track the rate limits of REST and GraphQL separately"() {
+        given:
+        def reset = now.plusSeconds(120).epochSecond.toString()
+        server.enqueue(new MockResponse().setHeader('x-ratelimit-resource', 'graphql').setHeader('x-ratelimit-remaining', '0').setHeader('x-ratelimit-reset', reset).setBody('{}'))
+        server.enqueue(new MockResponse().setBody('{}'))
+        server.enqueue(new MockResponse().setBody('{}'))
+        def client = client()
+        def query = post('/graphql', '{"query": "query { viewer { login } }"}')
+
+        when:
+        execute(client, query)
+        execute(client, get())
+
+        then:
+        sleeps.empty
+
+        when:
+        execute(client, query)
+
+        then:
+        sleeps.size() == 1
+        sleeps[0] >= 120_000 && sleeps[0] <= 121_000
+    }
+
+    private OkHttpClient client() {
+        def clock = Stub(Clock) {
+            instant() >> { now }
+            getZone() >> ZoneId.of('UTC')
+        }
+        def sleeper = { long millis ->
+            sleeps << millis
+            now = now.plus(Duration.ofMillis(millis))
+        } as GitHubRateLimiter.Sleeper
+        new OkHttpClient.Builder().addInterceptor(new GitHubRateLimiter(clock, sleeper)).build()
+    }
+
+    private def execute(Request request) {
+        execute(client(), request)
+    }
+
+    private static def execute(OkHttpClient client, Request request) {
+        def response = client.newCall(request).execute()
+        response.close()
+        response
+    }
+
+    private Request get() {
+        new Request.Builder().url(server.url('/repos/some-org/some-repo')).build()
+    }
+
+    private Request post(String path, String body) {
+        new Request.Builder().url(server.url(path)).post(RequestBody.create(body.bytes)).build()
+    }
+
+}
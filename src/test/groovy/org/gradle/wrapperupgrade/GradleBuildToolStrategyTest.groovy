@@ -86,6 +86,29 @@ class GradleBuildToolStrategyTest extends Specification {
         releaseNotesLink == 'https://docs.gradle.org/7.4.1/release-notes.html'
     }
 
+    def "fetch checksum of all distribution through the given transport"() {
+        given:
+        createGradleWrapperProperties().text = standard('8.5', 'all', '456')
+        def templateDir = workingDir.resolve('templates/gradle/8.6')
+        Files.createDirectories(templateDir.resolve('gradle/wrapper'))
+        templateDir.resolve('gradle/wrapper/gradle-wrapper.properties').text = standard('8.6', 'bin', 'bin-checksum')
+        def requestedUrls = []
+        HttpTransport transport = { URL url ->
+            requestedUrls << url.toString()
+            new ByteArrayInputStream('all-checksum'.bytes)
+        }
+
+        when:
+        gradleBuildToolStrategy.writeWrapperFiles(null, transport, new WrapperTemplateCache(workingDir.resolve('templates')), workingDir,
+            new BuildToolStrategy.VersionInfo('8.6', 'bin-checksum'))
+
+        then:
+        requestedUrls == ['https://services.gradle.org/distributions/gradle-8.6-all.zip.sha256']
+        def version = gradleBuildToolStrategy.extractCurrentVersion(workingDir)
+        version.version == '8.6'
+        version.checksum == Optional.of('all-checksum')
+    }
+
     private static String standard(String gradleVersion, String gradleDistro, String distributionChecksum, boolean isSnapshot = false) {
         """
 distributionBase=GRADLE_USER_HOME
@@ -1,5 +1,6 @@
 package org.gradle.wrapperupgrade
 
+import com.fasterxml.jackson.databind.ObjectMapper
 import spock.lang.Shared
 import spock.lang.Specification
 
@@ -25,6 +26,23 @@ class GradleMetadataFetcherTest extends Specification {
         version.map(node -> node.get('version').asText()).orElse(null) == '7.5.1'
     }
 
+    def "skip snapshots, nightlies and broken versions"() {
+        given:
+        def metadata = '''[
+            {"version": "8.1-20230101000000+0000", "snapshot": true, "nightly": true},
+            {"version": "8.0.1", "broken": true, "checksumUrl": "https://example.com/8.0.1"},
+            {"version": "8.0", "snapshot": false, "broken": false, "downloadUrls": ["a", "b"], "details": {"snapshot": true}, "checksumUrl": "https://example.com/8.0"},
+            {"version": "7.6", "snapshot": false, "checksumUrl": "https://example.com/7.6"}
+        ]'''
+
+        when:
+        def version = GradleMetadataFetcher.findLatestVersion(new ObjectMapper().getFactory().createParser(metadata))
+
+        then:
+        version.map(node -> node.get('version').asText()).orElse(null) == '8.0'
+        version.map(node -> node.get('checksumUrl').asText()).orElse(null) == 'https://example.com/8.0'
+    }
+
     def "fetch unknown latest version allowing pre-releases"() {
         when:
         def version = new GradleMetadataFetcher(getClass().getResource('/gradle-metadata-all-unknown.json'),
@@ -203,6 +203,31 @@ class GradleWrapperUpgradePluginFuncTest extends Specification {
         factoryFunc << ['create', 'register']
     }
 
+    def "register tasks of lazily declared projects sharing a clone"() {
+        when:
+        buildFile.text = """
+            ${plugins}
+            wrapperUpgrade {
+                gradle {
+                    register('first') { repo = 'gradle/wrapper-upgrade-gradle-plugin'; dir = 'samples/gradle' }
+                    register('second') { repo = 'gradle/wrapper-upgrade-gradle-plugin'; dir = 'samples/other' }
+                }
+            }
+        """.stripMargin()
+        def result = GradleRunner.create()
+            .withProjectDir(testProjectDir)
+            .withPluginClasspath()
+            .withGradleVersion(determineGradleVersion().version)
+            .withEnvironment(System.getenv() + ["JAVA_HOME": determineJavaHome()])
+            .withArguments('upgradeGradleWrapperAll', 'wrapperUpgradeReport', '--dry-run')
+            .build()
+
+        then:
+        result.output.indexOf(':upgradeGradleWrapperFirst SKIPPED') >= 0
+        result.output.indexOf(':upgradeGradleWrapperFirst SKIPPED') < result.output.indexOf(':upgradeGradleWrapperSecond SKIPPED')
+        result.output.contains(':wrapperUpgradeReport SKIPPED')
+    }
+
     @Requires({ determineGradleVersion().baseVersion >= GradleVersion.version('7.1') })
     def "upgrade wrapper on wrapper-upgrade-gradle-plugin with dry run and configuration cache"() {
         when:
@@ -0,0 +1,109 @@
+package org.gradle.wrapperupgrade
+
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.kohsuke.github.GitHubBuilder
+import spock.lang.Specification
+
+class GraphQlGitHubRepositoryClientTest extends Specification {
+
+    MockWebServer server = new MockWebServer()
+
+    def cleanup() {
+        server.shutdown()
+    }
+
+    def "resolve GraphQL endpoint"() {
+        expect:
+        GraphQlGitHubRepositoryClient.graphQlUrl(apiUrl) == graphQlUrl
+
+        where:
+        apiUrl                               | graphQlUrl
+        'https://api.github.com'             | 'https://api.github.com/graphql'
+        'https://github.example.com/api/v3'  | 'https://github.example.com/api/graphql'
+        'https://github.example.com/api/v3/' | 'https://github.example.com/api/graphql'
+    }
+
+    def "ignore closed pull requests from forks"() {
+        given:
+        server.enqueue(repositoryState(closedOwners.collect { [headRepositoryOwner: it ? [login: it] : null] }, []))
+
+        expect:
+        client().closedPullRequestExists() == closedPullRequestExists
+
+        where:
+        closedOwners         | closedPullRequestExists
+        []                   | false
+        ['someone']          | false
+        [null]               | false
+        ['someone', 'Org']   | true
+    }
+
+    def "only close open pull requests from the repository itself"() {
+        given:
+        server.enqueue(repositoryState([], [
+            openPullRequest(1, 'wrapperbot/project/gradle-8.5', 'org'),
+            openPullRequest(2, 'wrapperbot/project/gradle-8.4', 'someone'),
+            openPullRequest(3, 'feature', 'org')
+        ]))
+
+        expect:
+        client().openPullRequests()*.number == [1]
+    }
+
+    def "page through open pull requests with a query of the next page only"() {
+        given:
+        server.enqueue(repositoryState([], [openPullRequest(1, 'wrapperbot/project/gradle-8.5', 'org')], 'cursor-1'))
+        server.enqueue(json([data: [repository: [open: [nodes: [openPullRequest(2, 'wrapperbot/project/gradle-8.4', 'org')], pageInfo: [hasNextPage: false, endCursor: null]]]]]))
+
+        when:
+        def numbers = client().openPullRequests()*.number
+
+        then:
+        numbers == [1, 2]
+        server.takeRequest()
+        def page = new JsonSlurper().parseText(server.takeRequest().body.readUtf8())
+        !page.query.contains('closed')
+        page.variables == [owner: 'org', name: 'project', cursor: 'cursor-1']
+    }
+
+    def "fail when a page of open pull requests cannot be read"() {
+        given:
+        server.enqueue(repositoryState([], [openPullRequest(1, 'wrapperbot/project/gradle-8.5', 'org')], 'cursor-1'))
+        server.enqueue(json([data: null, errors: [[message: 'Something went wrong']]]))
+
+        when:
+        client().openPullRequests()
+
+        then:
+        def e = thrown(IOException)
+        e.message == 'Something went wrong'
+    }
+
+    private GraphQlGitHubRepositoryClient client() {
+        def gitHub = new GitHubBuilder().withEndpoint(server.url('/').toString()).build()
+        new GraphQlGitHubRepositoryClient(gitHub, new OkHttpClient(), 'token', 'project', 'org/project',
+            'wrapperbot/project/gradle-8.6', 'wrapperbot/project/gradle-', [], [])
+    }
+
+    private static Map openPullRequest(int number, String headRefName, String owner) {
+        [id: "PR_$number", number: number, headRefName: headRefName, state: 'OPEN', url: "https://github.com/org/project/pull/$number", headRepositoryOwner: [login: owner]]
+    }
+
+    private static MockResponse repositoryState(List closed, List open, String nextCursor = null) {
+        json([data: [repository: [
+            id    : 'R_1',
+            ref   : null,
+            closed: [nodes: closed],
+            open  : [nodes: open, pageInfo: [hasNextPage: nextCursor != null, endCursor: nextCursor]]
+        ]]])
+    }
+
+    private static MockResponse json(Object body) {
+        new MockResponse().setHeader('Content-Type', 'application/json').setBody(JsonOutput.toJson(body))
+    }
+
+}
@@ -0,0 +1,73 @@
+package org.gradle.wrapperupgrade
+
+import org.gradle.wrapperupgrade.BuildToolStrategy.VersionInfo
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.time.ZoneOffset
+
+class LatestVersionCacheTest extends Specification {
+
+    @TempDir
+    Path cacheDir
+
+    def "read missing entry"() {
+        given:
+        def cache = new LatestVersionCache(cacheDir, Duration.ofHours(1))
+
+        expect:
+        cache.read('gradle-release') == Optional.empty()
+    }
+
+    def "read entry within ttl"() {
+        given:
+        def now = Instant.parse('2022-10-24T10:00:00Z')
+        new LatestVersionCache(cacheDir, Duration.ofHours(1), fixed(now)).write('gradle-release', new VersionInfo('7.5.1', '123'))
+
+        when:
+        def version = new LatestVersionCache(cacheDir, Duration.ofHours(1), fixed(now.plus(Duration.ofMinutes(59)))).read('gradle-release')
+
+        then:
+        version.get().version == '7.5.1'
+        version.get().checksum == Optional.of('123')
+    }
+
+    def "read entry without checksum"() {
+        given:
+        def cache = new LatestVersionCache(cacheDir, Duration.ofHours(1))
+        cache.write('maven-release', new VersionInfo('3.8.6', null))
+
+        when:
+        def version = cache.read('maven-release')
+
+        then:
+        version.get().version == '3.8.6'
+        version.get().checksum == Optional.empty()
+    }
+
+    def "ignore expired entry"() {
+        given:
+        def now = Instant.parse('2022-10-24T10:00:00Z')
+        new LatestVersionCache(cacheDir, Duration.ofHours(1), fixed(now)).write('gradle-release', new VersionInfo('7.5.1', '123'))
+
+        expect:
+        new LatestVersionCache(cacheDir, Duration.ofHours(1), fixed(now.plus(Duration.ofMinutes(61)))).read('gradle-release') == Optional.empty()
+    }
+
+    def "ignore corrupted entry"() {
+        given:
+        cacheDir.resolve('gradle-release.properties').text = 'version=7.5.1\ntimestamp=unknown'
+
+        expect:
+        new LatestVersionCache(cacheDir, Duration.ofHours(1)).read('gradle-release') == Optional.empty()
+    }
+
+    private static Clock fixed(Instant instant) {
+        Clock.fixed(instant, ZoneOffset.UTC)
+    }
+
+}
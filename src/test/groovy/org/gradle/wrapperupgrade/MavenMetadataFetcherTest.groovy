@@ -24,6 +24,29 @@ class MavenMetadataFetcherTest extends Specification {
         version.map(v -> v as String).orElse(null) == '3.8.6'
     }
 
+    def "only consider versions listed in versioning"() {
+        given:
+        def metadata = '''<metadata>
+            <version>9.0.0</version>
+            <versioning>
+                <latest>5.0.0</latest>
+                <versions>
+                    <version>3.9.1</version>
+                    <version> 3.10.0 </version>
+                    <version>4.0.0-rc-1</version>
+                </versions>
+            </versioning>
+        </metadata>'''
+
+        expect:
+        MavenMetadataFetcher.findLatestVersion(new ByteArrayInputStream(metadata.bytes), allowPreRelease).map(v -> v as String).orElse(null) == expectedVersion
+
+        where:
+        allowPreRelease | expectedVersion
+        true            | '4.0.0-rc-1'
+        false           | '3.10.0'
+    }
+
     def "fetch unknown latest version"() {
         when:
         def version = new MavenMetadataFetcher(getClass().getResource('/maven-metadata-none.xml')).fetchLatestVersion(false)
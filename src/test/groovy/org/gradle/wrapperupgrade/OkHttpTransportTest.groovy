@@ -0,0 +1,114 @@
+package org.gradle.wrapperupgrade
+
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+import java.time.Duration
+
+class OkHttpTransportTest extends Specification {
+
+    @TempDir
+    Path cacheDir
+
+    MockWebServer server = new MockWebServer()
+
+    def cleanup() {
+        server.shutdown()
+    }
+
+    def "retry transient failures"() {
+        given:
+        server.enqueue(new MockResponse().setResponseCode(503))
+        server.enqueue(new MockResponse().setBody('7.5.1'))
+        def transport = new OkHttpTransport(null, 3, Duration.ZERO)
+
+        expect:
+        transport.open(server.url('/versions/current').url()).text == '7.5.1'
+        server.requestCount == 2
+
+        cleanup:
+        transport.close()
+    }
+
+    def "wait for the delay requested by a throttled server before retrying"() {
+        given:
+        server.enqueue(new MockResponse().setResponseCode(code).setHeader('Retry-After', '1'))
+        server.enqueue(new MockResponse().setBody('7.5.1'))
+        def transport = new OkHttpTransport(null, 3, Duration.ofMillis(10))
+
+        when:
+        def start = System.nanoTime()
+        def version = transport.open(server.url('/versions/current').url()).text
+
+        then:
+        version == '7.5.1'
+        Duration.ofNanos(System.nanoTime() - start) >= Duration.ofSeconds(1)
+        server.requestCount == 2
+
+        cleanup:
+        transport.close()
+
+        where:
+        code << [429, 503]
+    }
+
+    def "fail rather than wait for a long delay requested by a throttled server"() {
+        given:
+        server.enqueue(new MockResponse().setResponseCode(429).setHeader('Retry-After', retryAfter))
+        server.enqueue(new MockResponse().setBody('7.5.1'))
+        def transport = new OkHttpTransport(null, 3, Duration.ZERO)
+
+        when:
+        transport.open(server.url('/versions/current').url())
+
+        then:
+        thrown(IOException)
+        server.requestCount == 1
+
+        cleanup:
+        transport.close()
+
+        where:
+        retryAfter << ['86400', 'Fri, 31 Dec 2100 23:59:59 GMT']
+    }
+
+    def "fail after bounded retries"() {
+        given:
+        3.times { server.enqueue(new MockResponse().setResponseCode(503)) }
+        def transport = new OkHttpTransport(null, 2, Duration.ZERO)
+
+        when:
+        transport.open(server.url('/versions/current').url())
+
+        then:
+        thrown(IOException)
+        server.requestCount == 3
+
+        cleanup:
+        transport.close()
+    }
+
+    def "revalidate cached responses"() {
+        given:
+        server.enqueue(new MockResponse().setHeader('ETag', '"v1"').setBody('7.5.1'))
+        server.enqueue(new MockResponse().setResponseCode(304))
+        def transport = new OkHttpTransport(cacheDir.toFile())
+
+        when:
+        def first = transport.open(server.url('/versions/current').url()).text
+        def second = transport.open(server.url('/versions/current').url()).text
+
+        then:
+        first == '7.5.1'
+        second == '7.5.1'
+        server.takeRequest().getHeader('If-None-Match') == null
+        server.takeRequest().getHeader('If-None-Match') == '"v1"'
+
+        cleanup:
+        transport.close()
+    }
+
+}
@@ -1,8 +1,6 @@
 package org.gradle.wrapperupgrade
 
-import org.kohsuke.github.GHCommitPointer
 import org.kohsuke.github.GHIssueState
-import org.kohsuke.github.GHPullRequest
 import spock.lang.Specification
 
 class PullRequestUtilsTest extends Specification {
@@ -29,6 +27,26 @@ class PullRequestUtilsTest extends Specification {
         'wrapperbot/someproj/gradle-wrapper-8.10'   | false
     }
 
+    def "closed pr lookup stops at first match"() {
+        given:
+        def visited = []
+        def pullRequests = [
+                stub('wrapperbot/someproj/gradle-wrapper-8.11.1', GHIssueState.CLOSED),
+                stub('wrapperbot/someproj/gradle-wrapper-8.11.1', GHIssueState.CLOSED)
+        ]
+        def iterable = { ->
+            def delegate = pullRequests.iterator()
+            [hasNext: { delegate.hasNext() }, next: { def pr = delegate.next(); visited << pr; pr }] as Iterator
+        } as Iterable<PullRequestInfo>
+
+        when:
+        def result = new PullRequestUtils(iterable).closedPrExists('wrapperbot/someproj/gradle-wrapper-8.11.1')
+
+        then:
+        result
+        visited.size() == 1
+    }
+
     def "pull requests to close"() {
         given:
         def pullRequests = [
@@ -45,7 +63,7 @@ class PullRequestUtilsTest extends Specification {
         def result = utils.pullRequestsToClose('someproj', 'gradle', latestBuildToolVersion)
 
         then:
-        result.collect { it.head.ref } as Set == toClose as Set
+        result.collect { it.headRef } as Set == toClose as Set
 
         where:
         latestBuildToolVersion | toClose
@@ -56,12 +74,7 @@ class PullRequestUtilsTest extends Specification {
         '8.12'                 | ['wrapperbot/someproj/gradle-wrapper-8.11.1', 'wrapperbot/someproj/gradle-wrapper-8.9']
     }
 
-    private GHPullRequest stub(String branchName, GHIssueState state) {
-        def pr = Stub(GHPullRequest)
-        def pointer = Stub(GHCommitPointer)
-        pointer.getRef() >> branchName
-        pr.getHead() >> pointer
-        pr.getState() >> state
-        return pr
+    private static PullRequestInfo stub(String branchName, GHIssueState state) {
+        return new PullRequestInfo('id', 1, branchName, state, 'url')
     }
 }
@@ -0,0 +1,71 @@
+package org.gradle.wrapperupgrade
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class SharedCheckoutServiceTest extends Specification {
+
+    @TempDir
+    Path tempDir
+
+    def service = new SharedCheckoutService() {
+        @Override
+        org.gradle.api.services.BuildServiceParameters.None getParameters() {
+            null
+        }
+    }
+
+    def "check out working copy once per build"() {
+        given:
+        def checkoutDir = tempDir.resolve('git-clones-shared/org_project-main')
+
+        when:
+        def first = service.acquire(checkoutDir)
+
+        then:
+        !first.isCheckedOut()
+
+        when:
+        first.checkedOut()
+        first.close()
+        def second = service.acquire(checkoutDir.resolve('../org_project-main'))
+
+        then:
+        second.isCheckedOut()
+
+        cleanup:
+        second?.close()
+    }
+
+    def "use working copy by one project at a time, without waiting for it"() {
+        given:
+        def checkoutDir = tempDir.resolve('git-clones-shared/org_project-main')
+        def otherCheckoutDir = tempDir.resolve('git-clones-shared/org_other-main')
+        def executor = Executors.newSingleThreadExecutor()
+        def lease = service.acquire(checkoutDir)
+
+        when:
+        executor.submit { service.acquire(checkoutDir).close() }.get(5, TimeUnit.SECONDS)
+
+        then:
+        def e = thrown(ExecutionException)
+        e.cause instanceof IllegalStateException
+
+        when:
+        executor.submit { service.acquire(otherCheckoutDir).close() }.get(5, TimeUnit.SECONDS)
+        lease.close()
+        executor.submit { service.acquire(checkoutDir).close() }.get(5, TimeUnit.SECONDS)
+
+        then:
+        noExceptionThrown()
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+}
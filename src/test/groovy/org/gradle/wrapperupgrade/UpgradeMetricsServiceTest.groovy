@@ -0,0 +1,100 @@
+package org.gradle.wrapperupgrade
+
+import groovy.json.JsonSlurper
+import org.gradle.testfixtures.ProjectBuilder
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+
+import static org.gradle.wrapperupgrade.UpgradeMetrics.Outcome.FAILED
+import static org.gradle.wrapperupgrade.UpgradeMetrics.Outcome.PULL_REQUEST_CREATED
+import static org.gradle.wrapperupgrade.UpgradeMetrics.Outcome.UP_TO_DATE
+
+class UpgradeMetricsServiceTest extends Specification {
+
+    @TempDir
+    Path tempDir
+
+    def "write report of all upgrades with their phases, counters and totals"() {
+        given:
+        def reportFile = tempDir.resolve('reports/wrapper-upgrade/wrapper-upgrade-metrics.json').toFile()
+        def service = service(reportFile)
+
+        def first = new UpgradeMetrics('project-a', 'Gradle', 'org/project-a')
+        first.phase('clone', { 42L } as UpgradeMetrics.Phase)
+        first.increment(UpgradeMetrics.BYTES_CLONED, 1024)
+        first.increment(UpgradeMetrics.API_CALLS, 3)
+        first.finish(PULL_REQUEST_CREATED, null)
+        service.record(first)
+
+        def second = new UpgradeMetrics('project-b', 'Maven', 'org/project-b')
+        second.phase('clone', { } as UpgradeMetrics.VoidPhase)
+        second.increment(UpgradeMetrics.API_CALLS, 2)
+        second.finish(UP_TO_DATE, null)
+        service.record(second)
+
+        when:
+        service.close()
+        def report = new JsonSlurper().parse(reportFile)
+
+        then:
+        report.upgrades*.project as Set == ['project-a', 'project-b'] as Set
+        def upgrade = report.upgrades.find { it.project == 'project-a' }
+        upgrade.buildTool == 'Gradle'
+        upgrade.repository == 'org/project-a'
+        upgrade.outcome == 'PULL_REQUEST_CREATED'
+        upgrade.phaseMillis.keySet() == ['clone'] as Set
+        upgrade.counters == [processSpawns: 0, apiCalls: 3, bytesCloned: 1024]
+        report.totals.upgrades == 2
+        report.totals.counters == [apiCalls: 5, bytesCloned: 1024, processSpawns: 0]
+        report.totals.phaseMillis.keySet() == ['clone'] as Set
+    }
+
+    def "record failure of upgrade"() {
+        given:
+        def service = service(tempDir.resolve('report.json').toFile())
+        def metrics = new UpgradeMetrics('project-a', 'Gradle', 'org/project-a')
+
+        when:
+        metrics.phase('clone', { throw new IOException('clone failed') } as UpgradeMetrics.VoidPhase)
+
+        then:
+        thrown(IOException)
+
+        when:
+        metrics.finish(FAILED, 'java.io.IOException: clone failed')
+        service.record(metrics)
+        def upgrade = service.report().get('upgrades').get(0)
+
+        then:
+        upgrade.get('outcome').asText() == 'FAILED'
+        upgrade.get('failure').asText() == 'java.io.IOException: clone failed'
+        upgrade.get('phaseMillis').has('clone')
+    }
+
+    def "write no report when no upgrade ran"() {
+        given:
+        def reportFile = tempDir.resolve('report.json').toFile()
+
+        when:
+        service(reportFile).close()
+
+        then:
+        !reportFile.exists()
+    }
+
+    private UpgradeMetricsService service(File reportFile) {
+        def objects = ProjectBuilder.builder().withProjectDir(tempDir.resolve('project').toFile()).build().objects
+        def params = Stub(UpgradeMetricsService.Params) {
+            getReportFile() >> objects.fileProperty().fileValue(reportFile)
+        }
+        return new UpgradeMetricsService() {
+            @Override
+            UpgradeMetricsService.Params getParameters() {
+                params
+            }
+        }
+    }
+
+}
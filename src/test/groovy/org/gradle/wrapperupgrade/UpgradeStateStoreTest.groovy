@@ -0,0 +1,89 @@
+package org.gradle.wrapperupgrade
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+
+import static org.gradle.wrapperupgrade.UpgradeMetrics.Outcome.BRANCH_EXISTS
+import static org.gradle.wrapperupgrade.UpgradeMetrics.Outcome.CLOSED_PULL_REQUEST_EXISTS
+import static org.gradle.wrapperupgrade.UpgradeMetrics.Outcome.FAILED
+import static org.gradle.wrapperupgrade.UpgradeMetrics.Outcome.PULL_REQUEST_CREATED
+import static org.gradle.wrapperupgrade.UpgradeMetrics.Outcome.UP_TO_DATE
+
+class UpgradeStateStoreTest extends Specification {
+
+    @TempDir
+    Path stateDir
+
+    def "read missing state"() {
+        given:
+        def store = new UpgradeStateStore(stateDir)
+
+        expect:
+        store.read('gradle-project') == Optional.empty()
+    }
+
+    def "read written state"() {
+        given:
+        def store = new UpgradeStateStore(stateDir.resolve('upgrade-state'))
+        store.write('gradle-project', new UpgradeStateStore.State('abc', '0123456789abcdef', '7.5', '7.6', PULL_REQUEST_CREATED))
+
+        when:
+        def state = new UpgradeStateStore(stateDir.resolve('upgrade-state')).read('gradle-project').get()
+
+        then:
+        state.configuration == 'abc'
+        state.baseCommit == '0123456789abcdef'
+        state.usedVersion == '7.5'
+        state.latestVersion == '7.6'
+        state.outcome == PULL_REQUEST_CREATED
+    }
+
+    def "ignore incomplete or unknown state"() {
+        given:
+        stateDir.resolve('gradle-project.properties').text = content
+
+        expect:
+        new UpgradeStateStore(stateDir).read('gradle-project') == Optional.empty()
+
+        where:
+        content << [
+            'configuration=abc\nbaseCommit=0123\nusedVersion=7.5\nlatestVersion=7.6\n',
+            'configuration=abc\nbaseCommit=0123\nusedVersion=7.5\nlatestVersion=7.6\noutcome=UNKNOWN\n'
+        ]
+    }
+
+    def "skip project whose previous upgrade would have the same outcome"() {
+        given:
+        def state = new UpgradeStateStore.State('abc', '0123', '7.5', '7.6', outcome)
+
+        expect:
+        state.isUnchanged('abc', new UpgradeStateStore.RemoteState('0123', '7.6', prBranchExists)) == unchanged
+
+        where:
+        outcome                    | prBranchExists | unchanged
+        UP_TO_DATE                 | false          | true
+        CLOSED_PULL_REQUEST_EXISTS | false          | true
+        BRANCH_EXISTS              | true           | true
+        BRANCH_EXISTS              | false          | false
+        PULL_REQUEST_CREATED       | true           | true
+        PULL_REQUEST_CREATED       | false          | false
+        FAILED                     | true           | false
+    }
+
+    def "upgrade project again when its base branch, latest version or configuration changed"() {
+        given:
+        def state = new UpgradeStateStore.State('abc', '0123', '7.5', '7.6', UP_TO_DATE)
+
+        expect:
+        !state.isUnchanged(configuration, new UpgradeStateStore.RemoteState(baseCommit, latestVersion, true))
+
+        where:
+        configuration | baseCommit | latestVersion
+        'abc'         | '4567'     | '7.6'
+        'abc'         | '0123'     | '7.6.1'
+        'def'         | '0123'     | '7.6'
+    }
+
+}
@@ -0,0 +1,125 @@
+package org.gradle.wrapperupgrade
+
+import groovy.json.JsonOutput
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.gradle.testfixtures.ProjectBuilder
+import org.kohsuke.github.GitHubBuilder
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+
+class UpgradeWrapperWorkActionTest extends Specification {
+
+    @TempDir
+    Path tempDir
+
+    MockWebServer server = new MockWebServer()
+    MockResponse contentsResponse
+    List<String> requestedPaths = []
+
+    def setup() {
+        server.dispatcher = new Dispatcher() {
+            @Override
+            MockResponse dispatch(RecordedRequest request) {
+                requestedPaths << request.path
+                if (request.requestUrl.encodedPath() == '/repos/org/project') {
+                    return json([name: 'project', full_name: 'org/project', url: server.url('/repos/org/project').toString()])
+                }
+                if (request.requestUrl.encodedPath() == '/repos/org/project/contents/gradle/wrapper/gradle-wrapper.properties') {
+                    return contentsResponse
+                }
+                return new MockResponse().setResponseCode(404)
+            }
+        }
+    }
+
+    def cleanup() {
+        server.shutdown()
+    }
+
+    def "resolve GitHub repository name"() {
+        expect:
+        UpgradeWrapperWorkAction.gitHubRepositoryName(repository) == Optional.ofNullable(expectedName)
+
+        where:
+        repository                                                       | expectedName
+        'gradle/wrapper-upgrade-gradle-plugin'                           | 'gradle/wrapper-upgrade-gradle-plugin'
+        'https://github.com/gradle/wrapper-upgrade-gradle-plugin.git'    | 'gradle/wrapper-upgrade-gradle-plugin'
+        'https://github.com/gradle/wrapper-upgrade-gradle-plugin'        | 'gradle/wrapper-upgrade-gradle-plugin'
+        'https://gitlab.com/gradle/wrapper-upgrade-gradle-plugin.git'    | null
+    }
+
+    def "skip project already on latest version remotely"() {
+        given:
+        contentsResponse = wrapperProperties('8.6')
+
+        when:
+        def latestVersionUsed = UpgradeWrapperWorkAction.latestVersionUsedRemotely(parameters('org/project'), BuildToolStrategy.GRADLE, gitHub())
+
+        then:
+        latestVersionUsed == Optional.of('8.6')
+        requestedPaths.contains('/repos/org/project/contents/gradle/wrapper/gradle-wrapper.properties?ref=main')
+    }
+
+    def "clone project not on latest version remotely"() {
+        given:
+        contentsResponse = wrapperProperties('8.5')
+
+        expect:
+        UpgradeWrapperWorkAction.latestVersionUsedRemotely(parameters('org/project'), BuildToolStrategy.GRADLE, gitHub()) == Optional.empty()
+    }
+
+    def "fall back to cloning when the wrapper properties cannot be read remotely"() {
+        given:
+        contentsResponse = response
+
+        expect:
+        UpgradeWrapperWorkAction.latestVersionUsedRemotely(parameters('org/project'), BuildToolStrategy.GRADLE, gitHub()) == Optional.empty()
+
+        where:
+        response << [
+            new MockResponse().setResponseCode(404).setBody('{"message": "Not Found"}'),
+            new MockResponse().setResponseCode(500).setBody('{"message": "Server Error"}'),
+            json([type: 'file', encoding: 'base64', content: 'not the wrapper properties'.bytes.encodeBase64().toString()])
+        ]
+    }
+
+    def "fall back to cloning projects not hosted on GitHub"() {
+        expect:
+        UpgradeWrapperWorkAction.latestVersionUsedRemotely(parameters('https://gitlab.com/org/project.git'), BuildToolStrategy.GRADLE, gitHub()) == Optional.empty()
+        requestedPaths.empty
+    }
+
+    private UpgradeWrapperWorkAction.Parameters parameters(String repo) {
+        def objects = ProjectBuilder.builder().withProjectDir(tempDir.resolve('project').toFile()).build().objects
+        def versionMetadataService = Stub(VersionMetadataService) {
+            lookupLatestVersion(BuildToolStrategy.GRADLE, false) >> new BuildToolStrategy.VersionInfo('8.6', null)
+        }
+        Stub(UpgradeWrapperWorkAction.Parameters) {
+            getProject() >> objects.property(String).value('project')
+            getRepo() >> objects.property(String).value(repo)
+            getDir() >> objects.property(String).value('.')
+            getBaseBranch() >> objects.property(String).value('main')
+            getAllowPreRelease() >> objects.property(Boolean)
+            getVersionMetadataService() >> objects.property(VersionMetadataService).value(versionMetadataService)
+        }
+    }
+
+    private def gitHub() {
+        new GitHubBuilder().withEndpoint(server.url('/').toString()).build()
+    }
+
+    private static MockResponse wrapperProperties(String version) {
+        def properties = "distributionUrl=https\\://services.gradle.org/distributions/gradle-${version}-bin.zip\n"
+        json([type: 'file', encoding: 'base64', path: 'gradle/wrapper/gradle-wrapper.properties', content: properties.bytes.encodeBase64().toString()])
+    }
+
+    private static MockResponse json(Object body) {
+        new MockResponse().setHeader('Content-Type', 'application/json').setBody(JsonOutput.toJson(body))
+    }
+
+}
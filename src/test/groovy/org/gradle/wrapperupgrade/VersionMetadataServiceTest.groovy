@@ -0,0 +1,65 @@
+package org.gradle.wrapperupgrade
+
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.gradle.testfixtures.ProjectBuilder
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+import java.time.Duration
+
+class VersionMetadataServiceTest extends Specification {
+
+    @TempDir
+    Path tempDir
+
+    MockWebServer server = new MockWebServer()
+
+    def cleanup() {
+        server.shutdown()
+    }
+
+    def "cache latest version per source of versions"() {
+        given:
+        server.enqueue(new MockResponse().setBody('{"version": "8.6"}'))
+        server.enqueue(new MockResponse().setBody('{"version": "8.5"}'))
+        def service = versionMetadataService(server.url('/gradle').toString())
+        def mirrorService = versionMetadataService(server.url('/mirror').toString())
+        def cachedService = versionMetadataService(server.url('/gradle').toString())
+
+        when:
+        def latestVersion = service.lookupLatestVersion(BuildToolStrategy.GRADLE, false).version
+        def mirrorLatestVersion = mirrorService.lookupLatestVersion(BuildToolStrategy.GRADLE, false).version
+        def cachedLatestVersion = cachedService.lookupLatestVersion(BuildToolStrategy.GRADLE, false).version
+
+        then:
+        latestVersion == '8.6'
+        mirrorLatestVersion == '8.5'
+        cachedLatestVersion == '8.6'
+        server.takeRequest().path == '/gradle/versions/current'
+        server.takeRequest().path == '/mirror/versions/current'
+        server.requestCount == 2
+
+        cleanup:
+        [service, mirrorService, cachedService]*.close()
+    }
+
+    private VersionMetadataService versionMetadataService(String gradleVersionsUrl) {
+        def objects = ProjectBuilder.builder().withProjectDir(tempDir.resolve('project').toFile()).build().objects
+        def params = Stub(VersionMetadataService.Params) {
+            getCacheDir() >> objects.directoryProperty().fileValue(tempDir.resolve('versions').toFile())
+            getCacheTtl() >> objects.property(Duration).value(Duration.ofHours(1))
+            getHttpCacheDir() >> objects.directoryProperty()
+            getGradleVersionsUrl() >> objects.property(String).value(gradleVersionsUrl)
+            getMavenRepositoryUrl() >> objects.property(String)
+        }
+        return new VersionMetadataService() {
+            @Override
+            VersionMetadataService.Params getParameters() {
+                params
+            }
+        }
+    }
+
+}
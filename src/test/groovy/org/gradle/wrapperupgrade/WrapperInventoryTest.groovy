@@ -0,0 +1,131 @@
+package org.gradle.wrapperupgrade
+
+import groovy.json.JsonOutput
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+import java.util.regex.Pattern
+
+class WrapperInventoryTest extends Specification {
+
+    @TempDir
+    Path indexDir
+
+    MockWebServer server = new MockWebServer()
+    List<Map> repositories = []
+    Map<String, List<String>> trees = [:]
+    List<String> treeRequests = []
+
+    def setup() {
+        repositories << repository('app', '2024-05-01T10:00:00Z', ['java'])
+        repositories << repository('library', '2024-05-02T10:00:00Z', ['java', 'library'])
+        repositories << repository('website', '2024-05-03T10:00:00Z', [])
+        repositories << repository('legacy', '2024-05-04T10:00:00Z', ['java'], true)
+        repositories << repository('empty', null, ['java'])
+        trees['app'] = ['README.md', 'gradle/wrapper/gradle-wrapper.properties', 'gradle/wrapper/gradle-wrapper.jar', 'gradlew']
+        trees['library'] = ['.mvn/wrapper/maven-wrapper.properties', 'samples/gradle/gradle/wrapper/gradle-wrapper.properties', 'samples/maven/.mvn/wrapper/maven-wrapper.properties']
+        trees['website'] = ['index.html']
+        server.dispatcher = new Dispatcher() {
+            @Override
+            MockResponse dispatch(RecordedRequest request) {
+                def path = request.requestUrl.encodedPath()
+                if (path == '/orgs/org/repos') {
+                    // Two repositories per page, to exercise the pagination
+                    def page = (request.requestUrl.queryParameter('page') ?: '1') as int
+                    def response = json(repositories.drop((page - 1) * 2).take(2))
+                    if (page * 2 < repositories.size()) {
+                        response.setHeader('Link', "<${server.url('/orgs/org/repos?page=' + (page + 1))}>; rel=\"next\"")
+                    }
+                    return response
+                }
+                if (path.startsWith('/repos/org/') && path.endsWith('/git/trees/main')) {
+                    def name = path.substring('/repos/org/'.length(), path.indexOf('/git/trees/'))
+                    treeRequests << name
+                    if (!trees.containsKey(name)) {
+                        return new MockResponse().setResponseCode(409)
+                    }
+                    return json([sha: "tree-$name", truncated: false, tree: trees[name].collect { [path: it, type: 'blob'] } + [[path: 'gradle', type: 'tree']]])
+                }
+                return new MockResponse().setResponseCode(404)
+            }
+        }
+    }
+
+    def cleanup() {
+        server.shutdown()
+    }
+
+    def "discover wrappers of the non-archived repositories of an organization"() {
+        when:
+        def discovery = inventory().discover('org', [], null)
+
+        then:
+        wrappers(discovery) == ['gradle org/app .', 'gradle org/library samples/gradle', 'maven org/library .', 'maven org/library samples/maven']
+        discovery.repositories == 4
+        discovery.scannedRepositories == 4
+        treeRequests.sort() == ['app', 'empty', 'library', 'website']
+    }
+
+    def "filter repositories by topic and name pattern"() {
+        when:
+        def discovery = inventory().discover('org', topics, namePattern ? Pattern.compile(namePattern) : null)
+
+        then:
+        discovery.wrappers*.repo.unique() == expectedRepos
+
+        where:
+        topics              | namePattern | expectedRepos
+        ['library']         | null        | ['org/library']
+        ['java']            | 'a.*'       | ['org/app']
+        ['docs', 'library'] | 'lib.*'     | ['org/library']
+        []                  | 'web.*'     | []
+    }
+
+    def "scan only the repositories pushed since the previous discovery"() {
+        given:
+        inventory().discover('org', [], null)
+        treeRequests.clear()
+        repositories[0].pushed_at = '2024-06-01T10:00:00Z'
+        trees['app'] = ['build/gradle/wrapper/gradle-wrapper.properties']
+
+        when:
+        def discovery = new WrapperInventory(new OkHttpClient(), server.url('/').toString(), null, indexDir).discover('org', [], null)
+
+        then:
+        treeRequests == ['app']
+        discovery.scannedRepositories == 1
+        wrappers(discovery) == ['gradle org/app build', 'gradle org/library samples/gradle', 'maven org/library .', 'maven org/library samples/maven']
+    }
+
+    def "write discovered wrappers as fleet manifest lines"() {
+        given:
+        def line = WrapperInventory.manifestLine(new WrapperInventory.Wrapper(BuildToolStrategy.MAVEN, 'org/library', 'samples/maven', 'main'))
+
+        expect:
+        line == '{"buildTool":"maven","repo":"org/library","dir":"samples/maven","baseBranch":"main"}'
+        FleetManifest.parse(line).name == 'library-samples-maven'
+    }
+
+    private WrapperInventory inventory() {
+        new WrapperInventory(new OkHttpClient(), server.url('/').toString(), 'token', indexDir)
+    }
+
+    private static List<String> wrappers(WrapperInventory.Discovery discovery) {
+        discovery.wrappers.collect { "${it.buildToolStrategy.buildToolName().toLowerCase()} ${it.repo} ${it.dir}".toString() }.sort()
+    }
+
+    private static Map repository(String name, String pushedAt, List<String> topics, boolean archived = false) {
+        [name: name, full_name: "org/$name", default_branch: 'main', pushed_at: pushedAt, topics: topics, archived: archived]
+    }
+
+    private static MockResponse json(Object body) {
+        new MockResponse().setHeader('Content-Type', 'application/json').setBody(JsonOutput.toJson(body))
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.gradle.wrapperupgrade
+
+import spock.lang.Specification
+
+class WrapperPropertiesTest extends Specification {
+
+    def "merge generated properties with existing properties"() {
+        given:
+        def template = [
+            'distributionBase=GRADLE_USER_HOME',
+            'distributionPath=wrapper/dists',
+            'distributionUrl=https\\://services.gradle.org/distributions/gradle-8.5-bin.zip',
+            'networkTimeout=10000',
+            'zipStoreBase=GRADLE_USER_HOME',
+            'zipStorePath=wrapper/dists'
+        ]
+        def existing = WrapperProperties.values([
+            'distributionBase=PROJECT',
+            'distributionPath=wrapper/dists',
+            'distributionSha256Sum=abc',
+            'distributionUrl=https\\://services.gradle.org/distributions/gradle-7.6-all.zip',
+            'customKey=value'
+        ])
+
+        when:
+        def merged = WrapperProperties.merge(template, existing, ['distributionUrl', 'distributionSha256Sum'] as Set,
+            [distributionUrl: 'https\\://services.gradle.org/distributions/gradle-8.5-all.zip', distributionSha256Sum: 'def'])
+
+        then:
+        merged == [
+            'distributionBase=PROJECT',
+            'distributionPath=wrapper/dists',
+            'distributionUrl=https\\://services.gradle.org/distributions/gradle-8.5-all.zip',
+            'networkTimeout=10000',
+            'zipStoreBase=GRADLE_USER_HOME',
+            'zipStorePath=wrapper/dists',
+            'distributionSha256Sum=def',
+            'customKey=value'
+        ]
+    }
+
+    def "remove generated property overridden with null"() {
+        given:
+        def template = ['# comment', 'distributionUrl=https\\://services.gradle.org/distributions/gradle-8.5-bin.zip']
+        def existing = WrapperProperties.values(['distributionSha256Sum=abc', 'distributionUrl=https\\://services.gradle.org/distributions/gradle-7.6-bin.zip'])
+
+        expect:
+        WrapperProperties.merge(template, existing, ['distributionUrl', 'distributionSha256Sum'] as Set, [distributionSha256Sum: null]) == [
+            '# comment',
+            'distributionUrl=https\\://services.gradle.org/distributions/gradle-8.5-bin.zip'
+        ]
+    }
+
+    def "resolve distribution url"() {
+        expect:
+        WrapperProperties.distributionUrl(generatedUrl, existingUrl) == expectedUrl
+
+        where:
+        generatedUrl                                                                             | existingUrl                                                                              | expectedUrl
+        'https\\://services.gradle.org/distributions/gradle-8.5-bin.zip'                        | null                                                                                     | 'https\\://services.gradle.org/distributions/gradle-8.5-bin.zip'
+        'https\\://services.gradle.org/distributions/gradle-8.5-bin.zip'                        | 'https\\://services.gradle.org/distributions-snapshots/gradle-8.5-20231101-bin.zip'     | 'https\\://services.gradle.org/distributions/gradle-8.5-bin.zip'
+        'https\\://services.gradle.org/distributions/gradle-8.5-bin.zip'                        | 'https\\://mirror.example.com/gradle/gradle-7.6-bin.zip'                                 | 'https\\://mirror.example.com/gradle/gradle-8.5-bin.zip'
+        'https://repo.maven.apache.org/maven2/org/apache/maven/apache-maven/3.9.5/apache-maven-3.9.5-bin.zip' | 'https://repo.maven.apache.org/maven2/org/apache/maven/apache-maven/3.8.6/apache-maven-3.8.6-bin.zip' | 'https://repo.maven.apache.org/maven2/org/apache/maven/apache-maven/3.9.5/apache-maven-3.9.5-bin.zip'
+    }
+
+}